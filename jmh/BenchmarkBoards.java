@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+
+/**
+ * Sets up the operations measured by the JMH benchmarks in the bench
+ * package, on a four player board three rounds into a game. JMH will not
+ * take benchmarks in the default package, and a named package cannot see
+ * the game's classes, so each benchmark asks for its operation by name once,
+ * while setting up, and calls it through an IntSupplier; the int returned
+ * depends on the work, so JMH can keep it from being optimized away.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BenchmarkBoards {
+
+    /**
+     * not instantiable
+     */
+    private BenchmarkBoards () {}
+
+    /**
+     * Sets up an operation on a fresh board.
+     *
+     * @param name operation: Graph.connected, Graph.isEdge, Graph.getAdjacent,
+     * Map.constructGraph.LEGACY (or any other Map.Generator),
+     * Map.countConnected, Map.getPropertyOf, Map.getEnemyNeighbors,
+     * ComputerStrategy.willAttack or pbenoit.willAttack (the original
+     * ComputerStrategy, which makes the same decisions)
+     * @param size rows and columns of the square board
+     * @param victimRatio share of the cells left unused
+     * @return the operation
+     */
+    public static IntSupplier operation (String name, int size, double victimRatio) {
+        Topology topology = GridTopology.square(size, size);
+        Map board = midGame(topology, victimRatio, 4, size);
+        Graph graph = board.getGraph();
+        int[] cells = shuffledCells(board, size), cursor = new int[1];
+        Player p = leader(board);
+        if (name.startsWith("Map.constructGraph.")) {
+            //a board of its own: building graphs uses the board's random
+            //number generator and scratch space
+            Map own = newBoard(topology, victimRatio, 4, size);
+            own.setGenerator(Map.Generator.valueOf(name.substring(19)));
+            return () -> own.constructGraph(topology, own.VICTIMS).size();
+        }
+        switch (name) {
+        case "Graph.connected":
+            return () -> graph.connected() ? 1 : 0;
+        case "Graph.isEdge":
+            return () -> {
+                int id = cells[cursor[0]++ % cells.length];
+                return graph.isEdge(id, id + 1) ? 1 : 0;
+            };
+        case "Graph.getAdjacent":
+            return () -> graph.getAdjacent(cells[cursor[0]++ % cells.length]).size();
+        case "Map.countConnected":
+            return () -> board.countConnected(p);
+        case "Map.getPropertyOf":
+            return () -> board.getPropertyOf(p).size();
+        case "Map.getEnemyNeighbors":
+            return () -> board.getEnemyNeighbors(
+                    board.getTerritory(cells[cursor[0]++ % cells.length])).size();
+        case "ComputerStrategy.willAttack":
+            ComputerStrategy strategy = new ComputerStrategy();
+            strategy.setPlayer(p);
+            return () -> strategy.willAttack(board) ? 1 : 0;
+        case "pbenoit.willAttack":
+            pbenoit before = new pbenoit();
+            before.setPlayer(p);
+            return () -> before.willAttack(board) ? 1 : 0;
+        default:
+            throw new IllegalArgumentException("no operation " + name);
+        }
+    }
+
+    /**
+     * Builds a board and plays three rounds of ComputerStrategy players on
+     * it, so the measured calls see a realistic mix of owners and dice.
+     *
+     * @param topology board shape
+     * @param victimRatio share of the cells left unused
+     * @param players number of players
+     * @param seed board and game seed
+     * @return board in mid game
+     */
+    static Map midGame (Topology topology, double victimRatio, int players, long seed) {
+        Map board = newBoard(topology, victimRatio, players, seed);
+        Simulator sim = new Simulator(board, new SplittableRandom(seed));
+        for (int round = 0; round < 3; round++)
+            for (int step = 0; step < players; step++) {
+                Player p = board.getPlayer(step);
+                if (board.countTerritories(p) > 0 && sim.playTurn(p)) return board;
+            }
+        return board;
+    }
+
+    /**
+     * Builds a fresh board seated with ComputerStrategy players.
+     *
+     * @param topology board shape
+     * @param victimRatio share of the cells left unused
+     * @param players number of players
+     * @param seed board seed
+     * @return new board
+     */
+    static Map newBoard (Topology topology, double victimRatio, int players, long seed) {
+        ArrayList<Player> seated = new ArrayList<>();
+        for (int step = 0; step < players; step++)
+            seated.add(Simulator.seat("Player" + step, new ComputerStrategy()));
+        return new MapBuilder(seated).topology(topology)
+                .victims((int) (topology.size() * victimRatio)).seed(seed).build();
+    }
+
+    /**
+     * Lists a board's territories in a fixed shuffled order, so lookups that
+     * walk the list do not just stream through memory.
+     *
+     * @param board board to list
+     * @param seed shuffle seed
+     * @return ID#s of the territories in the game
+     */
+    static int[] shuffledCells (Map board, long seed) {
+        Graph graph = board.getGraph();
+        int[] cells = new int[board.OCCUPIED];
+        int count = 0;
+        for (int id = 0; id < board.NUMTERRITORIES; id++)
+            if (graph.isInGraph(id)) cells[count++] = id;
+        SplittableRandom rng = new SplittableRandom(seed);
+        for (int step = count - 1; step > 0; step--) {
+            int other = rng.nextInt(step + 1), swap = cells[step];
+            cells[step] = cells[other];
+            cells[other] = swap;
+        }
+        return cells;
+    }
+
+    /**
+     * finds the player with the most territories
+     *
+     * @param board board to look at
+     * @return leading player
+     */
+    static Player leader (Map board) {
+        Player p = board.getPlayer(0);
+        for (int step = 1; step < board.getPlayerCount(); step++)
+            if (board.countTerritories(board.getPlayer(step)) > board.countTerritories(p))
+                p = board.getPlayer(step);
+        return p;
+    }
+
+}
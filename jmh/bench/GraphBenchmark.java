@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Graph queries on the graph of a board in mid game.
+ *
+ * @author Phillip Benoit
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+    /**
+     * rows and columns of the board
+     */
+    @Param({"10", "50", "200"})
+    public int size;
+
+    /**
+     * share of the cells left unused
+     */
+    @Param({"0.25"})
+    public double victimRatio;
+
+    /**
+     * operations being measured
+     */
+    private IntSupplier connected, is_edge, adjacent;
+
+    /**
+     * builds the board
+     */
+    @Setup
+    public void setup () {
+        connected = Operations.get("Graph.connected", size, victimRatio);
+        is_edge = Operations.get("Graph.isEdge", size, victimRatio);
+        adjacent = Operations.get("Graph.getAdjacent", size, victimRatio);
+    }
+
+    @Benchmark
+    public int connected () {return connected.getAsInt();}
+
+    @Benchmark
+    public int isEdge () {return is_edge.getAsInt();}
+
+    @Benchmark
+    public int getAdjacent () {return adjacent.getAsInt();}
+
+}
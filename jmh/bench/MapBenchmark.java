@@ -0,0 +1,76 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Board queries on a board in mid game, and building new boards' graphs
+ * with each generator (on a board of their own).
+ *
+ * @author Phillip Benoit
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    /**
+     * rows and columns of the board
+     */
+    @Param({"10", "50", "200"})
+    public int size;
+
+    /**
+     * share of the cells left unused
+     */
+    @Param({"0.25"})
+    public double victimRatio;
+
+    /**
+     * operations being measured
+     */
+    private IntSupplier legacy, fast, connected, property, enemies;
+
+    /**
+     * builds the boards
+     */
+    @Setup
+    public void setup () {
+        legacy = Operations.get("Map.constructGraph.LEGACY", size, victimRatio);
+        fast = Operations.get("Map.constructGraph.FAST", size, victimRatio);
+        connected = Operations.get("Map.countConnected", size, victimRatio);
+        property = Operations.get("Map.getPropertyOf", size, victimRatio);
+        enemies = Operations.get("Map.getEnemyNeighbors", size, victimRatio);
+    }
+
+    @Benchmark
+    public int constructGraphLegacy () {return legacy.getAsInt();}
+
+    @Benchmark
+    public int constructGraphFast () {return fast.getAsInt();}
+
+    @Benchmark
+    public int countConnected () {return connected.getAsInt();}
+
+    @Benchmark
+    public int getPropertyOf () {return property.getAsInt();}
+
+    @Benchmark
+    public int getEnemyNeighbors () {return enemies.getAsInt();}
+
+}
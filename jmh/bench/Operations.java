@@ -0,0 +1,43 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.IntSupplier;
+
+/**
+ * Looks up operations set up by BenchmarkBoards, which lives in the default
+ * package with the rest of the game and so can only be reached by
+ * reflection.
+ *
+ * @author Phillip Benoit
+ *
+ */
+final class Operations {
+
+    /**
+     * not instantiable
+     */
+    private Operations () {}
+
+    /**
+     * Sets up an operation (see BenchmarkBoards.operation()).
+     *
+     * @param name operation name
+     * @param size rows and columns of the board
+     * @param victimRatio share of the cells left unused
+     * @return the operation
+     */
+    static IntSupplier get (String name, int size, double victimRatio) {
+        try {
+            return (IntSupplier) Class.forName("BenchmarkBoards")
+                    .getMethod("operation", String.class, int.class, double.class)
+                    .invoke(null, name, size, victimRatio);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for the leading player's ComputerStrategy to decide on an attack on
+ * a board in mid game, before (pbenoit, the original ComputerStrategy) and
+ * after its rewrite.
+ *
+ * @author Phillip Benoit
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmark {
+
+    /**
+     * rows and columns of the board
+     */
+    @Param({"10", "50", "200"})
+    public int size;
+
+    /**
+     * share of the cells left unused
+     */
+    @Param({"0.25"})
+    public double victimRatio;
+
+    /**
+     * decisions being measured
+     */
+    private IntSupplier before, after;
+
+    /**
+     * builds the board
+     */
+    @Setup
+    public void setup () {
+        before = Operations.get("pbenoit.willAttack", size, victimRatio);
+        after = Operations.get("ComputerStrategy.willAttack", size, victimRatio);
+    }
+
+    @Benchmark
+    public int willAttackBefore () {return before.getAsInt();}
+
+    @Benchmark
+    public int willAttackAfter () {return after.getAsInt();}
+
+}
@@ -0,0 +1,221 @@
+import java.util.Arrays;
+
+/**
+ * Answers whether removing a vertex would split a graph into pieces. Used by
+ * Map.constructGraph to carve victims out of the board without running a
+ * full connectivity pass for every removal.
+ *
+ * Most candidates are accepted by a small local search: if the vertex's
+ * neighbors can still reach each other within a few steps, the vertex is not
+ * an articulation point. Candidates that fail the local search are looked up
+ * in a table of articulation points built with the Hopcroft-Tarjan algorithm.
+ * The table is rebuilt lazily; while it is out of date such candidates are
+ * rejected, which can only keep the graph connected. Once the number of such
+ * rejections is a fixed fraction of the graph size the table is rebuilt, so
+ * they get a fair look and the rebuild cost stays constant per candidate.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class ArticulationIndex {
+
+    /**
+     * number of vertices the local search may visit before giving up
+     */
+    private static final int LOCAL_BUDGET = 32;
+
+    /**
+     * minimum stale rejections before the table is rebuilt
+     */
+    private static final int REBUILD_AFTER = 64;
+
+    /**
+     * graph size divisor giving the stale rejections allowed on large graphs
+     */
+    private static final int REBUILD_FRACTION = 32;
+
+    /**
+     * graph being indexed
+     */
+    private final Graph graph;
+
+    /**
+     * true for every articulation point in the last table built
+     */
+    private final boolean[] cut;
+
+    /**
+     * discovery order and low link of each vertex (0 = undiscovered)
+     */
+    private final int[] order, low;
+
+    /**
+     * explicit depth first search stack and edge cursor for each entry
+     */
+    private final int[] stack, cursor;
+
+    /**
+     * visit stamps and queue for the local search
+     */
+    private final int[] seen, queue;
+
+    /**
+     * stamp written into seen by the current local search
+     */
+    private int epoch;
+
+    /**
+     * graph version the table was built against (table is stale otherwise)
+     */
+    private int builtVersion;
+
+    /**
+     * candidates rejected since the table went stale
+     */
+    private int staleRejections;
+
+    /**
+     * constructor
+     *
+     * @param graph graph to index
+     */
+    public ArticulationIndex (Graph graph) {
+        this.graph = graph;
+        int size = graph.size();
+        cut = new boolean[size];
+        order = new int[size];
+        low = new int[size];
+        stack = new int[size];
+        cursor = new int[size];
+        seen = new int[size];
+        queue = new int[LOCAL_BUDGET + 1];
+        rebuild();
+    }
+
+    /**
+     * Returns true if the vertex is active and removing it leaves the rest of
+     * the active vertices connected without stranding any neighbor (a
+     * neighbor whose only edge leads to the vertex).
+     *
+     * @param vertex candidate for removal
+     * @return true if the vertex can be removed
+     */
+    public boolean isSafeToRemove (int vertex) {
+        int degree = graph.degree(vertex);
+        if (degree == 0) return false;
+
+        //removing the vertex must not leave a neighbor with no edges
+        for (int step = 0; step < degree; step++)
+            if (graph.degree(graph.neighbor(vertex, step)) == 1) return false;
+
+        //cheap answer for vertices whose neighbors meet nearby
+        if (degree == 1 || locallyConnected(vertex)) return true;
+
+        //exact answer while the table matches the graph
+        if (builtVersion == graph.getVersion()) return !cut[vertex];
+
+        //conservative answer until enough candidates have been turned away
+        if (++staleRejections < Math.max(REBUILD_AFTER,
+                graph.getActiveVertices() / REBUILD_FRACTION)) return false;
+        rebuild();
+        return !cut[vertex];
+    }
+
+    /**
+     * Returns true if the vertex was an articulation point when the table was
+     * last built, rebuilding it first if the graph has changed.
+     *
+     * @param vertex test vertex
+     * @return true if removing the vertex disconnects the graph
+     */
+    public boolean isArticulationPoint (int vertex) {
+        if (builtVersion != graph.getVersion()) rebuild();
+        return cut[vertex];
+    }
+
+    /**
+     * Breadth first search from one neighbor of the vertex that avoids the
+     * vertex itself, stopping once every other neighbor has been found or the
+     * visit budget runs out.
+     *
+     * @param vertex vertex being considered for removal
+     * @return true if all of the vertex's neighbors reached each other
+     */
+    private boolean locallyConnected (int vertex) {
+        if (++epoch == 0) {
+            Arrays.fill(seen, 0);
+            epoch = 1;
+        }
+
+        //neighbors still to be found are marked with the negative epoch
+        int degree = graph.degree(vertex), missing = degree - 1;
+        for (int step = 1; step < degree; step++)
+            seen[graph.neighbor(vertex, step)] = -epoch;
+
+        //search outward from the first neighbor
+        int head = 0, tail = 0;
+        seen[vertex] = epoch;
+        seen[graph.neighbor(vertex, 0)] = epoch;
+        queue[tail++] = graph.neighbor(vertex, 0);
+        while (head < tail) {
+            int index = queue[head++];
+            for (int step = 0; step < graph.degree(index); step++) {
+                int next = graph.neighbor(index, step);
+                if (seen[next] == epoch) continue;
+                if (seen[next] == -epoch && --missing == 0) return true;
+                seen[next] = epoch;
+                if (tail == LOCAL_BUDGET) return false;
+                queue[tail++] = next;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the articulation point table with an iterative version of the
+     * Hopcroft-Tarjan depth first search.
+     */
+    private void rebuild () {
+        int size = graph.size(), counter = 0;
+        Arrays.fill(cut, false);
+        Arrays.fill(order, 0);
+
+        //search every component so inactive vertices are skipped cleanly
+        for (int root = 0; root < size; root++) {
+            if (order[root] != 0 || graph.degree(root) == 0) continue;
+            int top = 0, rootChildren = 0;
+            order[root] = low[root] = ++counter;
+            stack[top] = root;
+            cursor[top++] = 0;
+            while (top > 0) {
+                int index = stack[top - 1];
+                if (cursor[top - 1] < graph.degree(index)) {
+
+                    //follow the next edge
+                    int next = graph.neighbor(index, cursor[top - 1]++);
+                    if (order[next] == 0) {
+                        order[next] = low[next] = ++counter;
+                        stack[top] = next;
+                        cursor[top++] = 0;
+                        if (index == root) rootChildren++;
+                    } else if (top < 2 || next != stack[top - 2])
+                        low[index] = Math.min(low[index], order[next]);
+                } else {
+
+                    //finished with this vertex, report to its parent
+                    top--;
+                    if (top > 0) {
+                        int parent = stack[top - 1];
+                        low[parent] = Math.min(low[parent], low[index]);
+                        if (parent != root && low[index] >= order[parent])
+                            cut[parent] = true;
+                    }
+                }
+            }
+            cut[root] = rootChildren > 1;
+        }
+        builtVersion = graph.getVersion();
+        staleRejections = 0;
+    }
+
+}
@@ -0,0 +1,166 @@
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Rolls the total of any number of dice with a single random draw, by
+ * sampling the exact distribution of totals (from BattleOdds) instead of
+ * rolling each die. Each number of dice has an alias table (Walker's
+ * method): one draw picks a column and a threshold, and the column either
+ * keeps its own total or hands over to its alias, so a roll costs the same
+ * for one die as for a hundred. Totals come out with the right chances to
+ * within 2^-32.
+ *
+ * resolve() settles a whole batch of independent battles into primitive
+ * arrays. The seeded version splits the batch into fixed chunks, each with
+ * its own SplittableRandom split off the seed in order, and runs the chunks
+ * in parallel, so the results depend only on the seed and not on the
+ * number of threads.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BattleDice {
+
+    /**
+     * largest number of dice covered
+     */
+    public static final int MAX_DICE = BattleOdds.MAX_DICE;
+
+    /**
+     * battles in each chunk of a parallel batch
+     */
+    public static final int CHUNK = 4096;
+
+    /**
+     * start of each number of dice's columns (column c holds total dice + c)
+     */
+    private static final int[] START = new int[MAX_DICE + 2];
+
+    /**
+     * chance a column keeps its own total
+     */
+    private static final double[] KEEP;
+
+    /**
+     * column each column hands over to
+     */
+    private static final int[] ALIAS;
+
+    static {
+        for (int dice = 1; dice <= MAX_DICE; dice++)
+            START[dice + 1] = START[dice] + columns(dice);
+        KEEP = new double[START[MAX_DICE + 1]];
+        ALIAS = new int[KEEP.length];
+        for (int dice = 1; dice <= MAX_DICE; dice++) build(dice);
+    }
+
+    /**
+     * no instances
+     */
+    private BattleDice () {}
+
+    /**
+     * number of possible totals
+     *
+     * @param dice number of dice
+     * @return number of columns
+     */
+    private static int columns (int dice) {return 5 * dice + 1;}
+
+    /**
+     * Builds the alias table of one number of dice (Vose's method: columns
+     * holding less than their share are topped up from ones holding more).
+     *
+     * @param dice number of dice
+     */
+    private static void build (int dice) {
+        int count = columns(dice), base = START[dice];
+        double[] chance = BattleOdds.distribution(dice), share = new double[count];
+        int[] small = new int[count], large = new int[count];
+        int small_count = 0, large_count = 0;
+        for (int column = 0; column < count; column++) {
+            share[column] = chance[dice + column] * count;
+            if (share[column] < 1.0) small[small_count++] = column;
+            else large[large_count++] = column;
+        }
+        while (small_count > 0 && large_count > 0) {
+            int less = small[--small_count], more = large[--large_count];
+            KEEP[base + less] = share[less];
+            ALIAS[base + less] = more;
+            share[more] -= 1.0 - share[less];
+            if (share[more] < 1.0) small[small_count++] = more;
+            else large[large_count++] = more;
+        }
+
+        //what is left holds a full share (up to rounding)
+        while (large_count > 0) KEEP[base + large[--large_count]] = 1.0;
+        while (small_count > 0) KEEP[base + small[--small_count]] = 1.0;
+    }
+
+    /**
+     * Rolls a number of six sided dice.
+     *
+     * @param dice number of dice (0 to MAX_DICE)
+     * @param rng source of randomness
+     * @return total of the roll
+     */
+    public static int roll (int dice, RandomGenerator rng) {
+        if (dice == 0) return 0;
+        long bits = rng.nextLong();
+        int column = (int) (((bits >>> 32) * columns(dice)) >>> 32);
+        if ((bits & 0xFFFFFFFFL) * 0x1.0p-32 >= KEEP[START[dice] + column])
+            column = ALIAS[START[dice] + column];
+        return dice + column;
+    }
+
+    /**
+     * Resolves a range of battles: both sides roll all of their dice and the
+     * attacker wins with a strictly higher total.
+     *
+     * @param attack attacker's dice for each battle
+     * @param defense defender's dice for each battle
+     * @param attackRolls receives the attacker's totals
+     * @param defenseRolls receives the defender's totals
+     * @param from first battle
+     * @param to one past the last battle
+     * @param rng source of randomness
+     * @return number of battles the attacker won
+     */
+    public static int resolve (int[] attack, int[] defense, int[] attackRolls,
+            int[] defenseRolls, int from, int to, RandomGenerator rng) {
+        int wins = 0;
+        for (int step = from; step < to; step++) {
+            int a = roll(attack[step], rng), d = roll(defense[step], rng);
+            attackRolls[step] = a;
+            defenseRolls[step] = d;
+            if (a > d) wins++;
+        }
+        return wins;
+    }
+
+    /**
+     * Resolves a batch of battles in parallel, with results that depend only
+     * on the seed.
+     *
+     * @param attack attacker's dice for each battle
+     * @param defense defender's dice for each battle
+     * @param attackRolls receives the attacker's totals
+     * @param defenseRolls receives the defender's totals
+     * @param count number of battles
+     * @param seed seed of the batch
+     * @return number of battles the attacker won
+     */
+    public static int resolve (int[] attack, int[] defense, int[] attackRolls,
+            int[] defenseRolls, int count, long seed) {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        SplittableRandom master = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) streams[chunk] = master.split();
+        return IntStream.range(0, chunks).parallel()
+                .map(chunk -> resolve(attack, defense, attackRolls, defenseRolls,
+                        chunk * CHUNK, Math.min(count, (chunk + 1) * CHUNK), streams[chunk]))
+                .sum();
+    }
+
+}
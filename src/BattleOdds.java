@@ -0,0 +1,115 @@
+/**
+ * Exact odds of winning an attack. Both sides roll all of their dice and the
+ * attacker wins only with a strictly higher total, so the chance of winning
+ * depends on nothing but the two dice counts. The chances for every pair of
+ * counts a board allows are worked out once, when the class is loaded, from
+ * the distributions of dice totals, and kept in one flat table shared by
+ * every strategy.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BattleOdds {
+
+    /**
+     * largest number of dice covered (the most a Map allows per territory)
+     */
+    public static final int MAX_DICE = Byte.MAX_VALUE;
+
+    /**
+     * row length of the table
+     */
+    private static final int STRIDE = MAX_DICE + 1;
+
+    /**
+     * number of faces on a die
+     */
+    private static final int FACES = 6;
+
+    /**
+     * chance of each total for 0 to MAX_DICE dice
+     */
+    private static final double[][] TOTALS = totals();
+
+    /**
+     * chance the attacker wins, at attackerDice * STRIDE + defenderDice
+     */
+    private static final double[] WIN = build();
+
+    /**
+     * no instances
+     */
+    private BattleOdds () {}
+
+    /**
+     * Gets the chance that an attack succeeds.
+     *
+     * @param attackerDice dice on the attacking territory (0 to MAX_DICE)
+     * @param defenderDice dice on the defending territory (0 to MAX_DICE)
+     * @return chance the attacker's roll is higher than the defender's
+     */
+    public static double winChance (int attackerDice, int defenderDice) {
+        return WIN[attackerDice * STRIDE + defenderDice];
+    }
+
+    /**
+     * Gets the distribution of the total of a roll (shared, so it must not be
+     * changed).
+     *
+     * @param dice number of dice (0 to MAX_DICE)
+     * @return chance of each total, indexed by the total
+     */
+    static double[] distribution (int dice) {return TOTALS[dice];}
+
+    /**
+     * Works out the distributions of totals: the distribution for n dice is
+     * the distribution for n - 1 dice spread over one more die.
+     *
+     * @return chance of each total for 0 to MAX_DICE dice
+     */
+    private static double[][] totals () {
+        double[][] totals = new double[STRIDE][];
+        totals[0] = new double[] {1.0};
+        for (int dice = 1; dice <= MAX_DICE; dice++) {
+            double[] last = totals[dice - 1], next = new double[FACES * dice + 1];
+            for (int sum = 0; sum < last.length; sum++)
+                for (int face = 1; face <= FACES; face++)
+                    next[sum + face] += last[sum] / FACES;
+            totals[dice] = next;
+        }
+        return totals;
+    }
+
+    /**
+     * Works out the table: each attacker distribution is matched against the
+     * running totals (cumulative distribution) of each defender's.
+     *
+     * @return table of winning chances
+     */
+    private static double[] build () {
+        int faces = FACES, top = faces * MAX_DICE + 1;
+        double[][] totals = TOTALS;
+
+        //chance of rolling below each total for 0 to MAX_DICE dice
+        double[][] below = new double[STRIDE][top + 1];
+        for (int dice = 0; dice <= MAX_DICE; dice++)
+            for (int sum = 1; sum <= top; sum++)
+                below[dice][sum] = below[dice][sum - 1]
+                        + (sum - 1 < totals[dice].length ? totals[dice][sum - 1] : 0);
+
+        //the attacker wins when the defender rolls below the attacker's total
+        //(always when above the defender's best roll, never at or below its
+        //worst)
+        double[] table = new double[STRIDE * STRIDE];
+        for (int attack = 0; attack <= MAX_DICE; attack++)
+            for (int defend = 0; defend <= MAX_DICE; defend++) {
+                int best = faces * defend, last = Math.min(best, faces * attack);
+                double chance = 1.0 - below[attack][best + 1];
+                for (int sum = defend + 1; sum <= last; sum++)
+                    chance += totals[attack][sum] * below[defend][sum];
+                table[attack * STRIDE + defend] = Math.min(1.0, Math.max(0.0, chance));
+            }
+        return table;
+    }
+
+}
@@ -0,0 +1,239 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file of stored boards (see BoardView for the layout of one board) that
+ * is memory mapped for reading, so any board can be looked at by its
+ * number without reading or copying the rest of the file.
+ *
+ * The file starts with a magic number and a version, followed by the
+ * boards one after another, followed by the offset of every board (longs),
+ * the number of boards and the magic number again. The offsets let a
+ * corpus mix boards of different sizes.
+ *
+ * A mapping can hold at most 2GB, so larger files are mapped in windows of
+ * WINDOW bytes; the rare board that straddles two windows gets a small
+ * mapping of its own.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BoardCorpus implements Closeable {
+
+    /**
+     * marks a corpus file ("BBC1")
+     */
+    public static final int MAGIC = 0x42424331;
+
+    /**
+     * version of the layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * bytes mapped at a time
+     */
+    public static final long WINDOW = 1L << 30;
+
+    /**
+     * size of the file header and of the end of the trailer
+     */
+    private static final int HEADER = 8, TAIL = 8;
+
+    /**
+     * open file
+     */
+    private final FileChannel channel;
+
+    /**
+     * start of every board
+     */
+    private final long[] offsets;
+
+    /**
+     * end of the last board (start of the trailer)
+     */
+    private final long end;
+
+    /**
+     * mapped windows (window w starts at w * WINDOW)
+     */
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * Opens a corpus for reading.
+     *
+     * @param file corpus file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a corpus
+     */
+    public BoardCorpus (Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER + TAIL)
+                throw new IllegalArgumentException(file + " is not a board corpus");
+            ByteBuffer head = read(0, HEADER), tail = read(size - TAIL, TAIL);
+            int count = tail.getInt(0);
+            if (head.getInt(0) != MAGIC || tail.getInt(4) != MAGIC || count < 0
+                    || HEADER + 8L * count + TAIL > size)
+                throw new IllegalArgumentException(file + " is not a board corpus");
+            if (head.getInt(4) != VERSION)
+                throw new IllegalArgumentException(file + " has unknown version " + head.getInt(4));
+            end = size - TAIL - 8L * count;
+
+            //board offsets
+            offsets = new long[count];
+            channel.map(FileChannel.MapMode.READ_ONLY, end, 8L * count)
+                    .asLongBuffer().get(offsets);
+            for (int index = 0; index < count; index++)
+                if (offsets[index] < HEADER || offsets[index] + BoardView.HEADER > end
+                        || index > 0 && offsets[index] <= offsets[index - 1])
+                    throw new IllegalArgumentException(file + " has a bad offset for board " + index);
+
+            //boards
+            windows = new MappedByteBuffer[(int) ((end + WINDOW - 1) / WINDOW)];
+            for (int w = 0; w < windows.length; w++)
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, w * WINDOW,
+                        Math.min(WINDOW, end - w * WINDOW));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * reads a few bytes at a position
+     *
+     * @param position file position
+     * @param length number of bytes
+     * @return buffer holding them
+     * @throws IOException if the file cannot be read
+     */
+    private ByteBuffer read (long position, int length) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(length);
+        while (out.hasRemaining())
+            if (channel.read(out, position + out.position()) < 0)
+                throw new IOException("unexpected end of file");
+        return out.flip();
+    }
+
+    /**
+     * get number of boards
+     *
+     * @return number of boards
+     */
+    public int size () {return offsets.length;}
+
+    /**
+     * Gets a stored board without copying it.
+     *
+     * @param index board number
+     * @return view of the board
+     * @throws IOException if a board straddling two windows cannot be mapped
+     */
+    public BoardView get (int index) throws IOException {
+        long start = offsets[index];
+        long stop = index + 1 < offsets.length ? offsets[index + 1] : end;
+        int w = (int) (start / WINDOW);
+        if ((stop - 1) / WINDOW == w)
+            return new BoardView(windows[w].slice((int) (start - w * WINDOW),
+                    (int) (stop - start)));
+        return new BoardView(channel.map(FileChannel.MapMode.READ_ONLY, start, stop - start));
+    }
+
+    @Override
+    public void close () throws IOException {channel.close();}
+
+    /**
+     * Writes a corpus file one board at a time. The file is only readable
+     * once the writer is closed.
+     */
+    public static class Writer implements Closeable {
+
+        /**
+         * file being written
+         */
+        private final FileChannel channel;
+
+        /**
+         * start of every board so far
+         */
+        private long[] offsets = new long[64];
+
+        /**
+         * number of boards so far
+         */
+        private int count;
+
+        /**
+         * scratch buffer reused for every board
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        /**
+         * Creates (or replaces) a corpus file.
+         *
+         * @param file corpus file
+         * @throws IOException if the file cannot be written
+         */
+        public Writer (Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            flush();
+        }
+
+        /**
+         * Appends a board.
+         *
+         * @param board board to store
+         * @return number of the board in the corpus
+         * @throws IOException if the file cannot be written
+         */
+        public int add (Map board) throws IOException {
+            int size = BoardView.size(board);
+            if (buffer.capacity() < size) buffer = ByteBuffer.allocate(size);
+            BoardView.write(board, buffer);
+            if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count] = channel.position();
+            flush();
+            return count++;
+        }
+
+        /**
+         * writes out the scratch buffer
+         *
+         * @throws IOException if the file cannot be written
+         */
+        private void flush () throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Writes the board offsets and closes the file.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        @Override
+        public void close () throws IOException {
+            try {
+                ByteBuffer tail = ByteBuffer.allocate(8 * count + TAIL);
+                for (int index = 0; index < count; index++) tail.putLong(offsets[index]);
+                tail.putInt(count).putInt(MAGIC).flip();
+                while (tail.hasRemaining()) channel.write(tail);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Read only view of a board stored in the compact binary format, straight
+ * over the bytes it was read from (typically a slice of a memory mapped
+ * corpus file), so looking at a stored board copies nothing. Map.load()
+ * turns a view back into a playable board.
+ *
+ * Layout of one board (big endian):
+ * int rows, int columns, int victims, byte max dice, byte players,
+ * byte grid shape (GridTopology.Shape ordinal, or -1 for other shapes),
+ * byte generator (Map.Generator ordinal, which fixes the neighbor order),
+ * then one bit per cell marking the active cells (lowest bit first), one
+ * byte per cell holding the owner's player index plus one (0 for none) and
+ * the dice: one nibble per cell (low nibble first) when max dice is at most
+ * NIBBLE_DICE, otherwise one byte per cell. A board that is not on a grid
+ * ends with an int checksum of its topology (see checksum()), since its
+ * neighbors cannot be rebuilt from the header.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BoardView {
+
+    /**
+     * size of the fixed part of a record in bytes
+     */
+    public static final int HEADER = 16;
+
+    /**
+     * most dice a nibble can hold (boards allowing more store a byte per
+     * cell)
+     */
+    public static final int NIBBLE_DICE = 15;
+
+    /**
+     * bytes of the board (position 0 is the start of the record)
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * board settings read from the header
+     */
+    private final int rows, columns, victims, cells, max_dice;
+
+    /**
+     * start of the bitset, owner bytes and dice
+     */
+    private final int active_at, owners_at, dice_at;
+
+    /**
+     * true if the board is on a GridTopology
+     */
+    private final boolean grid;
+
+    /**
+     * constructor
+     *
+     * @param bytes bytes of one record starting at position 0
+     */
+    public BoardView (ByteBuffer bytes) {
+        this.bytes = bytes;
+        rows = bytes.getInt(0);
+        columns = bytes.getInt(4);
+        victims = bytes.getInt(8);
+        max_dice = bytes.get(12);
+        grid = bytes.get(14) >= 0;
+        cells = rows * columns;
+        active_at = HEADER;
+        owners_at = active_at + (cells + 7) / 8;
+        dice_at = owners_at + cells;
+        if (rows < 1 || columns < 1 || max_dice < 0
+                || bytes.limit() < size(rows, columns, max_dice, grid))
+            throw new IllegalArgumentException("not a board record");
+    }
+
+    /**
+     * Computes the size of a stored board.
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param maxDice max number of dice per territory
+     * @param grid true if the board is on a GridTopology
+     * @return record size in bytes
+     */
+    public static int size (int rows, int columns, int maxDice, boolean grid) {
+        int cells = rows * columns;
+        return HEADER + (cells + 7) / 8 + cells
+                + (maxDice > NIBBLE_DICE ? cells : (cells + 1) / 2) + (grid ? 0 : 4);
+    }
+
+    /**
+     * Computes the size a board takes when stored.
+     *
+     * @param board board to store
+     * @return record size in bytes
+     */
+    public static int size (Map board) {
+        return size(board.ROWS, board.COLUMNS, board.MAXDICE,
+                board.getTopology() instanceof GridTopology);
+    }
+
+    /**
+     * Sums up a topology's neighbor table, so a board stored on one
+     * topology is not loaded onto a different one of the same size.
+     *
+     * @param shape topology
+     * @return checksum
+     */
+    public static int checksum (Topology shape) {
+        return 31 * shape.getMaxDegree() + Arrays.hashCode(shape.getNeighbors());
+    }
+
+    /**
+     * Writes a board at the buffer's position and advances it.
+     *
+     * @param board board to store
+     * @param out buffer with at least size(board) bytes remaining
+     */
+    public static void write (Map board, ByteBuffer out) {
+        int cells = board.NUMTERRITORIES, start = out.position();
+        Topology shape = board.getTopology();
+        out.putInt(board.ROWS).putInt(board.COLUMNS).putInt(board.VICTIMS)
+                .put((byte) board.MAXDICE).put((byte) board.getPlayerCount())
+                .put((byte) (shape instanceof GridTopology
+                        ? ((GridTopology) shape).getShape().ordinal() : -1))
+                .put((byte) board.getGenerator().ordinal());
+
+        //active cells
+        Graph graph = board.getGraph();
+        for (int base = 0; base < cells; base += 8) {
+            int bits = 0;
+            for (int bit = 0; bit < 8 && base + bit < cells; bit++)
+                if (graph.isInGraph(base + bit)) bits |= 1 << bit;
+            out.put((byte) bits);
+        }
+
+        //owners, then dice two to a byte (or one if they do not fit)
+        for (int id = 0; id < cells; id++)
+            out.put((byte) (board.getOwnerIndex(id) + 1));
+        if (board.MAXDICE > NIBBLE_DICE)
+            for (int id = 0; id < cells; id++) out.put((byte) board.getDice(id));
+        else
+            for (int id = 0; id < cells; id += 2)
+                out.put((byte) (board.getDice(id)
+                        | (id + 1 < cells ? board.getDice(id + 1) << 4 : 0)));
+        if (!(shape instanceof GridTopology)) out.putInt(checksum(shape));
+        assert out.position() - start == size(board);
+    }
+
+    /**
+     * Stores a board in a new buffer.
+     *
+     * @param board board to store
+     * @return buffer holding the record (position 0, limit at its end)
+     */
+    public static ByteBuffer encode (Map board) {
+        ByteBuffer out = ByteBuffer.allocate(size(board));
+        write(board, out);
+        return out.flip();
+    }
+
+    /**
+     * get number of rows
+     *
+     * @return number of rows
+     */
+    public int getRows () {return rows;}
+
+    /**
+     * get number of columns
+     *
+     * @return number of columns
+     */
+    public int getColumns () {return columns;}
+
+    /**
+     * get number of unused spaces
+     *
+     * @return number of unused spaces
+     */
+    public int getVictims () {return victims;}
+
+    /**
+     * get max number of dice per territory
+     *
+     * @return max number of dice per territory
+     */
+    public int getMaxDice () {return max_dice;}
+
+    /**
+     * get number of players
+     *
+     * @return number of players
+     */
+    public int getPlayerCount () {return bytes.get(13);}
+
+    /**
+     * get grid shape
+     *
+     * @return shape (null if the board was not a GridTopology)
+     */
+    public GridTopology.Shape getShape () {
+        int shape = bytes.get(14);
+        return shape < 0 ? null : GridTopology.Shape.values()[shape];
+    }
+
+    /**
+     * get generator the board was built with
+     *
+     * @return generator
+     */
+    public Map.Generator getGenerator () {
+        return Map.Generator.values()[bytes.get(15)];
+    }
+
+    /**
+     * get bytes of the record (a duplicate, so its position can be moved)
+     *
+     * @return bytes starting at position 0
+     */
+    public ByteBuffer getBytes () {return bytes.duplicate().position(0);}
+
+    /**
+     * get size of the record in bytes
+     *
+     * @return record size
+     */
+    public int getSize () {return size(rows, columns, max_dice, grid);}
+
+    /**
+     * get checksum of the topology a board that is not on a grid was stored
+     * on
+     *
+     * @return checksum (see checksum()), or 0 for a grid board
+     */
+    public int getChecksum () {
+        return grid ? 0 : bytes.getInt(getSize() - 4);
+    }
+
+    /**
+     * test whether a territory is part of the board
+     *
+     * @param id territory ID#
+     * @return true if the territory is active
+     */
+    public boolean isActive (int id) {
+        return (bytes.get(active_at + (id >> 3)) >> (id & 7) & 1) != 0;
+    }
+
+    /**
+     * get owner of a territory
+     *
+     * @param id territory ID#
+     * @return owning player's index (-1 if unowned)
+     */
+    public int getOwnerIndex (int id) {
+        return (bytes.get(owners_at + id) & 0xFF) - 1;
+    }
+
+    /**
+     * get number of dice on a territory
+     *
+     * @param id territory ID#
+     * @return number of dice
+     */
+    public int getDice (int id) {
+        if (max_dice > NIBBLE_DICE) return bytes.get(dice_at + id);
+        return bytes.get(dice_at + (id >> 1)) >> ((id & 1) << 2) & 0xF;
+    }
+
+}
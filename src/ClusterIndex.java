@@ -0,0 +1,340 @@
+import java.util.Arrays;
+
+/**
+ * Tracks the connected clusters of territories owned by each player. Every
+ * owned territory carries the label of its cluster, and the size of each
+ * label is kept, so a cluster's size is one lookup.
+ *
+ * Capturing a territory joins it to the largest of its new owner's
+ * neighboring clusters and relabels the smaller ones into it, so a
+ * territory is relabeled only when its cluster at least doubles. Losing one
+ * can only split its cluster between the neighbors it leaves behind:
+ * searches start from each of those neighbors in turn, a step at a time,
+ * and merge when they meet. Once all but one of them have run out (each is
+ * then a separate cluster) the last one is left alone, so a split costs
+ * about the size of the pieces broken off, not the size of the cluster. A
+ * per player count of clusters by size keeps the largest cluster available
+ * in O(1).
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class ClusterIndex {
+
+    /**
+     * graph of the board being tracked
+     */
+    private final Graph graph;
+
+    /**
+     * owning player index of each territory (-1 for none)
+     */
+    private final int[] owner;
+
+    /**
+     * cluster label of each territory (-1 if unowned)
+     */
+    private final int[] label;
+
+    /**
+     * number of territories with each label
+     */
+    private final int[] size;
+
+    /**
+     * labels not in use (the first free_count entries)
+     */
+    private final int[] free;
+    private int free_count;
+
+    /**
+     * number of clusters of each size owned by each player (each row grows
+     * to fit the player's largest cluster so far)
+     */
+    private final int[][] histogram;
+
+    /**
+     * size of each player's largest cluster
+     */
+    private final int[] largest;
+
+    /**
+     * stack used to relabel a cluster
+     */
+    private final int[] stack;
+
+    /**
+     * visit stamps and the search that reached each territory during a split
+     */
+    private final int[] seen, search;
+
+    /**
+     * stamp written into seen by the current split
+     */
+    private int epoch;
+
+    /**
+     * territories reached by each search of a split, in the order they were
+     * reached (the ones from head on are still to be expanded)
+     */
+    private final int[][] queue;
+    private final int[] head, tail;
+
+    /**
+     * searches that have met are merged into groups: the group link of each
+     * search, and the number of searches in a group (valid at its root) that
+     * are still running
+     */
+    private final int[] group, running;
+
+    /**
+     * constructor (every territory starts unowned)
+     *
+     * @param graph graph of the board being tracked
+     * @param players number of players
+     */
+    public ClusterIndex (Graph graph, int players) {
+        this.graph = graph;
+        int cells = graph.size(), degree = Math.max(1, graph.getMaxDegree());
+        owner = new int[cells];
+        Arrays.fill(owner, -1);
+        label = new int[cells];
+        Arrays.fill(label, -1);
+        size = new int[cells];
+        free = new int[cells];
+        for (int step = 0; step < cells; step++) free[step] = cells - 1 - step;
+        free_count = cells;
+        histogram = new int[players][16];
+        largest = new int[players];
+        stack = new int[cells];
+        seen = new int[cells];
+        search = new int[cells];
+        queue = new int[degree][16];
+        head = new int[degree];
+        tail = new int[degree];
+        group = new int[degree];
+        running = new int[degree];
+    }
+
+    /**
+     * get size of a player's largest cluster
+     *
+     * @param player player index
+     * @return number of territories in the largest connected cluster
+     */
+    public int largest (int player) {return largest[player];}
+
+    /**
+     * get size of the cluster containing a territory
+     *
+     * @param id territory ID#
+     * @return number of territories in its cluster (0 if unowned)
+     */
+    public int clusterSize (int id) {
+        return owner[id] < 0 ? 0 : size[label[id]];
+    }
+
+    /**
+     * Records that a territory changed hands.
+     *
+     * @param id territory ID#
+     * @param to new owner's player index (-1 for none)
+     */
+    public void setOwner (int id, int to) {
+        int from = owner[id];
+        if (from == to) return;
+        owner[id] = to;
+        if (from >= 0) split(id, from);
+        label[id] = -1;
+        if (to >= 0) join(id, to);
+    }
+
+    /**
+     * Adds a territory to its new owner's clusters, merging the neighboring
+     * ones into the largest of them.
+     *
+     * @param id territory ID#
+     * @param to new owner's player index
+     */
+    private void join (int id, int to) {
+        int best = -1;
+        for (int step = 0; step < graph.degree(id); step++) {
+            int next = graph.neighbor(id, step);
+            if (owner[next] == to && (best < 0 || size[label[next]] > size[best]))
+                best = label[next];
+        }
+        if (best < 0) {
+            best = free[--free_count];
+            size[best] = 0;
+        }
+        else record(to, size[best], -1);
+        label[id] = best;
+        size[best]++;
+
+        //relabel the smaller neighboring clusters
+        for (int step = 0; step < graph.degree(id); step++) {
+            int next = graph.neighbor(id, step), old = label[next];
+            if (owner[next] != to || old == best) continue;
+            record(to, size[old], -1);
+            size[best] += size[old];
+            free[free_count++] = old;
+            int top = 0;
+            stack[top++] = next;
+            label[next] = best;
+            while (top > 0) {
+                int index = stack[--top];
+                for (int edge = 0; edge < graph.degree(index); edge++) {
+                    int cell = graph.neighbor(index, edge);
+                    if (owner[cell] == to && label[cell] == old) {
+                        label[cell] = best;
+                        stack[top++] = cell;
+                    }
+                }
+            }
+        }
+        record(to, size[best], 1);
+    }
+
+    /**
+     * Takes a territory out of its previous owner's cluster and gives new
+     * labels to any pieces the cluster breaks into.
+     *
+     * @param id territory that was lost (already reassigned in owner)
+     * @param from player index of the previous owner
+     */
+    private void split (int id, int from) {
+        int old = label[id];
+        record(from, size[old], -1);
+        size[old]--;
+
+        //one search from each neighbor the territory leaves behind
+        int searches = 0;
+        if (++epoch == 0) {
+            Arrays.fill(seen, 0);
+            epoch = 1;
+        }
+        for (int step = 0; step < graph.degree(id); step++) {
+            int next = graph.neighbor(id, step);
+            if (owner[next] != from) continue;
+            seen[next] = epoch;
+            search[next] = searches;
+            queue[searches][0] = next;
+            head[searches] = 0;
+            tail[searches] = 1;
+            group[searches] = searches;
+            running[searches] = 1;
+            searches++;
+        }
+
+        //a territory with at most one neighbor left cannot split anything
+        if (searches == 0) {
+            free[free_count++] = old;
+            return;
+        }
+        if (searches == 1) {
+            record(from, size[old], 1);
+            return;
+        }
+
+        //step the searches in turn until at most one group is still running
+        int open = searches;
+        while (open > 1)
+            for (int s = 0; s < searches && open > 1; s++) {
+                if (head[s] == tail[s]) continue;
+                int index = queue[s][head[s]++], mine = root(s);
+                for (int edge = 0; edge < graph.degree(index); edge++) {
+                    int cell = graph.neighbor(index, edge);
+                    if (owner[cell] != from) continue;
+                    if (seen[cell] != epoch) {
+                        seen[cell] = epoch;
+                        search[cell] = s;
+                        if (tail[s] == queue[s].length)
+                            queue[s] = Arrays.copyOf(queue[s], tail[s] * 2);
+                        queue[s][tail[s]++] = cell;
+                    } else {
+                        int other = root(search[cell]);
+                        if (other == mine) continue;
+                        group[other] = mine;
+                        if (running[other] > 0) open--;
+                        running[mine] += running[other];
+                    }
+                }
+                if (head[s] == tail[s] && --running[mine] == 0) open--;
+            }
+
+        //the group still running (or else the largest) keeps the old label
+        int keep = -1, best = -1;
+        for (int s = 0; s < searches; s++) {
+            if (root(s) != s) continue;
+            int count = members(s, searches);
+            if (running[s] > 0) {
+                keep = s;
+                break;
+            }
+            if (count > best) {
+                best = count;
+                keep = s;
+            }
+        }
+
+        //the other groups are clusters of their own
+        for (int g = 0; g < searches; g++) {
+            if (g == keep || root(g) != g) continue;
+            int fresh = free[--free_count];
+            size[fresh] = 0;
+            for (int s = 0; s < searches; s++) {
+                if (root(s) != g) continue;
+                for (int step = 0; step < tail[s]; step++) label[queue[s][step]] = fresh;
+                size[fresh] += tail[s];
+            }
+            size[old] -= size[fresh];
+            record(from, size[fresh], 1);
+        }
+        record(from, size[old], 1);
+    }
+
+    /**
+     * finds the group a search belongs to
+     *
+     * @param s search
+     * @return root search of its group
+     */
+    private int root (int s) {
+        while (group[s] != s) s = group[s] = group[group[s]];
+        return s;
+    }
+
+    /**
+     * counts the territories reached by a group
+     *
+     * @param g root search of the group
+     * @param searches number of searches
+     * @return number of territories reached
+     */
+    private int members (int g, int searches) {
+        int count = 0;
+        for (int s = 0; s < searches; s++)
+            if (root(s) == g) count += tail[s];
+        return count;
+    }
+
+    /**
+     * adds or removes one cluster from a player's size counts
+     *
+     * @param player player index
+     * @param clusterSize size of the cluster
+     * @param change +1 to add the cluster, -1 to remove it
+     */
+    private void record (int player, int clusterSize, int change) {
+        if (clusterSize >= histogram[player].length)
+            histogram[player] = Arrays.copyOf(histogram[player],
+                    Math.max(clusterSize + 1, histogram[player].length * 2));
+        histogram[player][clusterSize] += change;
+        if (change > 0)
+            largest[player] = Math.max(largest[player], clusterSize);
+        else
+            while (largest[player] > 0 && histogram[player][largest[player]] == 0)
+                largest[player]--;
+    }
+
+}
@@ -1,5 +1,3 @@
-import java.util.ArrayList;
-
 /**
  * AI for Bones Battle
  * 
@@ -17,6 +15,20 @@ public class ComputerStrategy implements Strategy{
      * Attacking and defending territory (assigned when found)
      */
     private Territory attacker, defender;
+    
+    /**
+     * Scratch buffers reused for every decision (grown to fit the board):
+     * the current property's targets, strongest first, and their dice
+     */
+    private int[] targets = new int[Graph.GRID_DEGREE],
+            target_dice = new int[Graph.GRID_DEGREE];
+    
+    /**
+     * Walk only the border when the player owns more than this many
+     * territories per border territory (otherwise walk the property in order
+     * and stop at the first attack)
+     */
+    private static final int INTERIOR_RATIO = 4;
 
     
     @Override
@@ -36,85 +48,135 @@ public class ComputerStrategy implements Strategy{
      */
     public boolean willAttack(Map board) {
         
-        //get all of the players properties
-        ArrayList<Territory> properties = board.getPropertyOf(p);
+        //size the buffers for this board
+        int degree = board.getGraph().getMaxDegree();
+        if (targets.length < degree) {
+            targets = new int[degree];
+            target_dice = new int[degree];
+        }
         
-        //test each property
-        for (Territory property:properties) {
-
-            //get list of valid targets
-            ArrayList<Territory> attack_list =
-                    getAttackList(board, property, property.getDice());
+        //only properties on the border have targets; of those that can
+        //attack, the one listed first in getPropertyOf() order (the lowest
+        //ID#) is used
+        int me = board.playerIndex(p), from = -1, to = -1,
+                owned = board.countTerritories(p), border = board.countBorder(p);
+        if (border * INTERIOR_RATIO < owned) {
             
-            //ensures all properties with max dice attack
-            if (property.getDice() == board.MAXDICE)
-                for (Territory defender:attack_list) {
-                    attacker = property;
-                    this.defender = defender;
-                    return true;
-                }
-
-            //test to make sure stronger tiles are not connected to the next space
-            for (Territory defender:attack_list) {
-                if (!getAttackList(board, defender,
-                        property.getDice()-1).isEmpty()) {
-                    attacker = property;
-                    this.defender = defender;
-                    return true;
+            //mostly interior: check every border property
+            for (int k = 0; k < border; k++) {
+                int property = board.getBorder(p, k);
+                if (from >= 0 && property > from) continue;
+                int target = getTarget(board, property, me);
+                if (target >= 0) {
+                    from = property;
+                    to = target;
                 }
             }
         }
+        else {
+            
+            //mostly border: stop at the first property that can attack
+            for (int k = 0; k < owned && from < 0; k++) {
+                int property = board.getProperty(p, k).getIdNum();
+                if (board.countEnemyNeighbors(property) == 0) continue;
+                to = getTarget(board, property, me);
+                if (to >= 0) from = property;
+            }
+        }
+        if (from < 0) return false;
+        attacker = board.getTerritory(from);
+        defender = board.getTerritory(to);
+        return true;
+    }
+    
+    /**
+     * Picks the territory a property should attack, if any.
+     * 
+     * @param board board to search
+     * @param property ID# of the attacking territory
+     * @param me player index of the owner
+     * @return ID# of the territory to attack (-1 for none)
+     */
+    private int getTarget(Map board, int property, int me) {
+        int pieces = board.getDice(property);
+
+        //get valid targets
+        int count = getAttackList(board, property, pieces, me);
+        if (count == 0) return -1;
+        
+        //ensures all properties with max dice attack
+        if (pieces == board.MAXDICE) return targets[0];
+
+        //test to make sure stronger tiles are not connected to the next space
+        for (int step = 0; step < count; step++)
+            if (isSafe(board, targets[step], pieces - 1, me)) return targets[step];
         
         //default behavior
-        return false;
+        return -1;
     }
     
     /**
-     * Get a list of valid targets for a specific territory
+     * Fills targets with a territory's enemy neighbors, strongest first (ties
+     * in neighbor order), in one pass over the neighbors. Inserting into the
+     * short buffer as they are found replaces sorting a list.
      * 
      * @param board board to search
-     * @param index territory to use to attack
+     * @param index ID# of the territory to use to attack
      * @param pieces number of pieces to test with
-     * @return list of targets (empty for defense mode)
+     * @param me player index of the owner
+     * @return number of targets (0 for defense mode)
      */
-    private ArrayList<Territory> getAttackList(Map board, Territory index, int pieces) {
-        
-        //lists for return values
-        ArrayList<Territory> return_list = new ArrayList<>(),
-                sorted_list = new ArrayList<>();
-        
-        //list of neighboring properties
-        ArrayList<Territory> neighbors = board.getNeighbors(index);
+    private int getAttackList(Map board, int index, int pieces, int me) {
+        Graph graph = board.getGraph();
+        int count = 0;
         
         //search all neighbors
-        for (Territory neighbor:neighbors) 
+        for (int step = 0; step < graph.degree(index); step++) {
+            int neighbor = graph.neighbor(index, step);
             
             //test for ownership
-            if (p != neighbor.getOwner()) {
-                
-                //defense mode if a stronger territory is found
-                if (neighbor.getDice() > pieces) {
-                    return_list.clear();
-                    return return_list;
-                }
-                
-                //add target
-                return_list.add(neighbor);
+            if (board.getOwnerIndex(neighbor) == me) continue;
+            
+            //defense mode if a stronger territory is found
+            int dice = board.getDice(neighbor);
+            if (dice > pieces) return 0;
+            
+            //insert target behind every target at least as strong
+            int slot = count++;
+            while (slot > 0 && target_dice[slot - 1] < dice) {
+                targets[slot] = targets[slot - 1];
+                target_dice[slot] = target_dice[slot - 1];
+                slot--;
             }
-        
-        //sort target list with strongest first
-        while (!return_list.isEmpty()) {
-            Territory max = return_list.get(0);
-            for (Territory defender:return_list)
-                if (defender.getDice() > max.getDice()) max = defender;
-            sorted_list.add(max);
-            return_list.remove(max);
+            targets[slot] = neighbor;
+            target_dice[slot] = dice;
         }
-        
-        //return target list
-        return sorted_list;
+        return count;
     }
-
+    
+    /**
+     * Tests whether a territory has another player's neighbors and none of
+     * them has more than the given number of dice (the same test as a non
+     * empty attack list, without building one).
+     * 
+     * @param board board to search
+     * @param index ID# of the territory to test
+     * @param pieces number of pieces to test with
+     * @param me player index of the owner
+     * @return true if the territory would have targets
+     */
+    private boolean isSafe(Map board, int index, int pieces, int me) {
+        Graph graph = board.getGraph();
+        boolean found = false;
+        for (int step = 0; step < graph.degree(index); step++) {
+            int neighbor = graph.neighbor(index, step);
+            if (board.getOwnerIndex(neighbor) == me) continue;
+            if (board.getDice(neighbor) > pieces) return false;
+            found = true;
+        }
+        return found;
+    }
+    
     @Override
     /**
      *Returns a reference to a territory that will be the source of the next
@@ -0,0 +1,223 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append only record of the games a Simulator plays, detailed enough for
+ * GameReplay to rebuild the board at any turn without running any strategy
+ * code. Attach one with Simulator.setLog().
+ *
+ * Each game is written as one block: an int giving the length of the rest
+ * of the block, the starting board (see BoardView), and then the events of
+ * the game, each a tag byte followed by variable length ints (seven bits a
+ * byte, lowest first, so small ID#s take one byte):
+ * TURN player index; ATTACK attacker, defender, attacker's roll, defender's
+ * roll; DIE territory given a die; FILL (the moving player's territories
+ * were all filled); END winner's index plus one (0 for a draw).
+ *
+ * A game is kept in memory until it ends and then written out, so a game
+ * cut off by a crash is simply missing from the log. Boards with any dice
+ * limit a Map allows (up to 127) can be logged: the starting board keeps
+ * its dice in nibbles or bytes to suit (see BoardView), and dice never
+ * appear in the events.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class GameLog implements Closeable {
+
+    /**
+     * event tags
+     */
+    static final byte TURN = 1, ATTACK = 2, DIE = 3, FILL = 4, END = 5;
+
+    /**
+     * bytes collected before they are written to the file
+     */
+    private static final int FLUSH = 1 << 16;
+
+    /**
+     * file being written
+     */
+    private final FileChannel channel;
+
+    /**
+     * games waiting to be written, and the game being played (a plain array
+     * rather than a ByteBuffer: the events are the hot path)
+     */
+    private byte[] buffer = new byte[FLUSH * 2];
+
+    /**
+     * bytes used in the buffer
+     */
+    private int length;
+
+    /**
+     * start of the game being played (-1 between games)
+     */
+    private int game_start = -1;
+
+    /**
+     * number of games written
+     */
+    private int games;
+
+    /**
+     * Creates (or replaces) a log file.
+     *
+     * @param file log file
+     * @throws IOException if the file cannot be written
+     */
+    public GameLog (Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * get number of games completed
+     *
+     * @return number of games completed
+     */
+    public int getGames () {return games;}
+
+    /**
+     * test whether a game is being recorded
+     *
+     * @return true between startGame() and endGame()
+     */
+    public boolean isRecording () {return game_start >= 0;}
+
+    /**
+     * Starts a new game (discarding one that never ended), storing the
+     * board in as many bytes as its dice limit needs.
+     *
+     * @param board freshly generated board
+     */
+    public void startGame (Map board) {
+        if (game_start >= 0) length = game_start;
+        int size = BoardView.size(board);
+        reserve(4 + size);
+        game_start = length;
+        BoardView.write(board, ByteBuffer.wrap(buffer, game_start + 4, size));
+        length += 4 + size;
+    }
+
+    /**
+     * records the start of a turn
+     *
+     * @param player index of the moving player
+     */
+    public void turn (int player) {
+        reserve(6);
+        buffer[length++] = TURN;
+        putInt(player);
+    }
+
+    /**
+     * records an attack
+     *
+     * @param attacker attacking territory ID#
+     * @param defender defending territory ID#
+     * @param attack attacker's roll
+     * @param defense defender's roll
+     */
+    public void attack (int attacker, int defender, int attack, int defense) {
+        reserve(21);
+        buffer[length++] = ATTACK;
+        putInt(attacker);
+        putInt(defender);
+        putInt(attack);
+        putInt(defense);
+    }
+
+    /**
+     * records a reinforcement of one die
+     *
+     * @param id territory ID#
+     */
+    public void die (int id) {
+        reserve(6);
+        buffer[length++] = DIE;
+        putInt(id);
+    }
+
+    /**
+     * records the moving player's territories all being filled
+     */
+    public void fill () {
+        reserve(1);
+        buffer[length++] = FILL;
+    }
+
+    /**
+     * Ends the game, writing it out once enough games have collected.
+     *
+     * @param winner index of the winning player (-1 for a draw)
+     * @throws IOException if the file cannot be written
+     */
+    public void endGame (int winner) throws IOException {
+        reserve(6);
+        buffer[length++] = END;
+        putInt(winner + 1);
+        ByteBuffer.wrap(buffer).putInt(game_start, length - game_start - 4);
+        game_start = -1;
+        games++;
+        if (length >= FLUSH) flush();
+    }
+
+    /**
+     * Writes out the completed games and closes the file (a game still
+     * being played is dropped).
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close () throws IOException {
+        try {
+            if (game_start >= 0) length = game_start;
+            game_start = -1;
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * writes out the completed games
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flush () throws IOException {
+        ByteBuffer out = ByteBuffer.wrap(buffer, 0, length);
+        while (out.hasRemaining()) channel.write(out);
+        length = 0;
+    }
+
+    /**
+     * makes room in the buffer for a long game
+     *
+     * @param bytes bytes about to be written
+     */
+    private void reserve (int bytes) {
+        if (buffer.length - length < bytes)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+    }
+
+    /**
+     * writes a non negative int seven bits at a time
+     *
+     * @param value value to write
+     */
+    private void putInt (int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+}
@@ -0,0 +1,320 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Plays back games recorded by a GameLog. Opening a game loads its starting
+ * board into a Map (which must have the same size, unused spaces, dice limit
+ * and players); seek() then moves the board to the start of any turn by
+ * applying the recorded attacks and reinforcements, without any strategy
+ * code or dice rolling. Seeking backwards reloads the starting board.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class GameReplay implements Closeable {
+
+    /**
+     * open file
+     */
+    private final FileChannel channel;
+
+    /**
+     * start of every game's block
+     */
+    private long[] offsets = new long[64];
+
+    /**
+     * number of games in the file
+     */
+    private int games;
+
+    /**
+     * board being replayed
+     */
+    private Map board;
+
+    /**
+     * events of the open game (position 0 is the first event)
+     */
+    private ByteBuffer events;
+
+    /**
+     * position of every turn's TURN event, and the end of the last turn
+     */
+    private int[] turns = new int[64];
+
+    /**
+     * number of turns in the open game, turn the board is at, and the
+     * winner's index (-1 for a draw)
+     */
+    private int turn_count, turn, winner;
+
+    /**
+     * starting board of the open game
+     */
+    private BoardView start;
+
+    /**
+     * Opens a log and finds the start of every game.
+     *
+     * @param file log file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a game block runs past the end of
+     * the file
+     */
+    public GameReplay (Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size(), position = 0;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            while (position < size) {
+                length.clear();
+                read(length, position);
+                long next = position + 4 + length.getInt(0);
+                if (next > size || length.getInt(0) < BoardView.HEADER)
+                    throw new IllegalArgumentException(file + " is cut off in game " + games);
+                if (games == offsets.length) offsets = Arrays.copyOf(offsets, games * 2);
+                offsets[games++] = position;
+                position = next;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * get number of games in the log
+     *
+     * @return number of games
+     */
+    public int size () {return games;}
+
+    /**
+     * Opens a game and puts its starting board on the given map.
+     *
+     * @param game game number
+     * @param board board to replay on
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the board does not fit the game
+     */
+    public void open (int game, Map board) throws IOException {
+        start = getStartingBoard(game);
+        events = start.getBytes().position(start.getSize()).slice();
+
+        //find the turns
+        turn_count = 0;
+        winner = -1;
+        int end = events.limit();
+        while (events.hasRemaining()) {
+            int at = events.position();
+            byte tag = events.get();
+            if (tag == GameLog.TURN) {
+                if (turn_count + 1 >= turns.length) turns = Arrays.copyOf(turns, turns.length * 2);
+                turns[turn_count++] = at;
+            } else if (tag == GameLog.END) {
+                end = at;
+                winner = getInt() - 1;
+                break;
+            }
+            skip(tag);
+        }
+        turns[turn_count] = end;
+        this.board = board;
+        rewind();
+    }
+
+    /**
+     * Reads the board a game started on (the view also covers the game's
+     * events, which follow it).
+     *
+     * @param game game number
+     * @return starting board
+     * @throws IOException if the file cannot be read
+     */
+    public BoardView getStartingBoard (int game) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        read(length, offsets[game]);
+        ByteBuffer block = ByteBuffer.allocate(length.getInt(0));
+        read(block, offsets[game] + 4);
+        return new BoardView(block.flip());
+    }
+
+    /**
+     * get number of turns in the open game
+     *
+     * @return number of turns
+     */
+    public int getTurns () {return turn_count;}
+
+    /**
+     * get turn the board is at (getTurns() once the game is over)
+     *
+     * @return turn number, counting from 0
+     */
+    public int getTurn () {return turn;}
+
+    /**
+     * get winner of the open game
+     *
+     * @return winning player's index (-1 for a draw)
+     */
+    public int getWinner () {return winner;}
+
+    /**
+     * get player moving in a turn
+     *
+     * @param turn turn number
+     * @return player index
+     */
+    public int getMover (int turn) {
+        events.position(turns[turn] + 1);
+        return getInt();
+    }
+
+    /**
+     * Moves the board to the start of a turn (getTurns() for the end of the
+     * game).
+     *
+     * @param target turn number
+     */
+    public void seek (int target) {
+        if (target < 0 || target > turn_count)
+            throw new IndexOutOfBoundsException("turn " + target + " of " + turn_count);
+        if (target < turn) rewind();
+        if (target == turn) return;
+        events.position(turns[turn]);
+        Player mover = null;
+        while (events.position() < turns[target]) {
+            byte tag = events.get();
+            switch (tag) {
+            case GameLog.TURN:
+                mover = board.getPlayer(getInt());
+                break;
+            case GameLog.ATTACK:
+                Territory attacker = board.getTerritory(getInt());
+                Territory defender = board.getTerritory(getInt());
+                if (getInt() > getInt()) {
+                    defender.setOwner(attacker.getOwner());
+                    defender.setDice(attacker.getDice() - 1);
+                }
+                attacker.setDice(1);
+                break;
+            case GameLog.DIE:
+                Territory t = board.getTerritory(getInt());
+                t.setDice(t.getDice() + 1);
+                break;
+            case GameLog.FILL:
+                for (int step = 0; step < board.countTerritories(mover); step++)
+                    board.getProperty(mover, step).setDice(board.MAXDICE);
+                break;
+            default:
+                throw new IllegalStateException("bad event " + tag + " in turn " + turn);
+            }
+        }
+        turn = target;
+    }
+
+    /**
+     * puts the starting board back
+     */
+    private void rewind () {
+        board.load(start);
+        turn = 0;
+    }
+
+    /**
+     * skips the values of an event
+     *
+     * @param tag event tag
+     */
+    private void skip (byte tag) {
+        int values = tag == GameLog.ATTACK ? 4 : tag == GameLog.FILL ? 0 : 1;
+        for (int step = 0; step < values; step++) getInt();
+    }
+
+    /**
+     * reads a variable length int from the events
+     *
+     * @return value read
+     */
+    private int getInt () {
+        int value = 0, shift = 0;
+        byte b;
+        do {
+            b = events.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * fills a buffer from the file
+     *
+     * @param out buffer to fill
+     * @param position file position
+     * @throws IOException if the file ends first
+     */
+    private void read (ByteBuffer out, long position) throws IOException {
+        long at = position;
+        while (out.hasRemaining()) {
+            int count = channel.read(out, at);
+            if (count < 0) throw new IOException("unexpected end of file");
+            at += count;
+        }
+    }
+
+    @Override
+    public void close () throws IOException {channel.close();}
+
+    /**
+     * Entry point: prints a recorded game's board at the start of a turn.
+     *
+     * @param args log file, game number and turn (the end of the game if
+     * left out)
+     * @throws IOException if the log cannot be read
+     */
+    public static void main (String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        try (GameReplay replay = new GameReplay(Paths.get(args[0]))) {
+            int game = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+            BoardView view = replay.getStartingBoard(game);
+
+            //stand in players (no strategy code runs)
+            ArrayList<Player> players = new ArrayList<>();
+            for (int step = 0; step < view.getPlayerCount(); step++)
+                players.add(Simulator.seat("Player" + step, new MilquetoastStrategy()));
+            Topology shape = view.getShape() == null ? null
+                    : GridTopology.of(view.getShape(), view.getRows(), view.getColumns());
+            if (shape == null)
+                throw new IllegalArgumentException("game was not played on a grid");
+            Map board = new Map(players, shape, view.getVictims(), view.getMaxDice(),
+                    new SplittableRandom(0), view.getGenerator());
+            replay.open(game, board);
+            replay.seek(args.length > 2 ? Integer.parseInt(args[2]) : replay.getTurns());
+
+            //owner and dice of every territory
+            System.out.printf("game %d of %d, turn %d of %d, winner %d%n", game,
+                    replay.size(), replay.getTurn(), replay.getTurns(), replay.getWinner());
+            for (int row = 0; row < board.ROWS; row++) {
+                StringBuilder line = new StringBuilder();
+                for (int col = 0; col < board.COLUMNS; col++) {
+                    int id = board.getTerritoryId(row, col);
+                    int owner = board.getOwnerIndex(id);
+                    line.append(owner < 0 ? "  . " : String.format(" %d:%d", owner, board.getDice(id)));
+                }
+                System.out.println(line);
+            }
+        }
+    }
+
+}
@@ -1,36 +1,96 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 /**
  * Graph class used to keep track of territories in the Bones Battle map
  * 
+ * Edges are kept in primitive arrays. While the graph is being built every
+ * vertex owns a fixed number of int slots (four for a square grid). Once
+ * construction is finished freeze() packs the edges into a compressed sparse
+ * row (CSR) layout for read-mostly play. Changing a frozen graph thaws it.
+ * 
  * @author Phillip Benoit
  *
  */
 public class Graph {
-    
+
+    /**
+     * default number of edge slots for each vertex (square grid)
+     */
+    public static final int GRID_DEGREE = 4;
+
     /**
-     * base data structure
+     * fixed stride adjacency rows (null while frozen)
      */
-	private ArrayList<ArrayList<Integer>> graph;
-	
+	private int[] rows;
+
+	/**
+	 * number of edge slots in each row
+	 */
+	private int stride;
+
+	/**
+	 * number of edges on each vertex
+	 */
+	private int[] degrees;
+
+	/**
+	 * CSR row offsets and edge targets (null while mutable)
+	 */
+	private int[] offsets, targets;
+
 	/**
 	 * number of vertices to create
 	 */
 	private final int NUMBER_OF_VERTICIES;
-	
+
+	/**
+	 * number of vertices with at least one edge
+	 */
+	private int active;
+
+	/**
+	 * incremented whenever an edge is added or removed
+	 */
+	private int version;
+
+	/**
+	 * largest degree any vertex has reached
+	 */
+	private int maxDegree;
+
 	/**
 	 * constructor
 	 * 
 	 * @param numVertices number of vertices
 	 */
     public Graph (int numVertices) {
+        this(numVertices, GRID_DEGREE);
+    }
+
+	/**
+	 * constructor for graphs with a known maximum degree
+	 * 
+	 * @param numVertices number of vertices
+	 * @param maxDegree number of edge slots to reserve for each vertex
+	 */
+    public Graph (int numVertices, int maxDegree) {
         NUMBER_OF_VERTICIES = numVertices;
-    	graph = new ArrayList<ArrayList<Integer>>();
-        for (int step = 0; step < NUMBER_OF_VERTICIES; step++)
-        	graph.add(new ArrayList<Integer>());
+        stride = Math.max(1, maxDegree);
+    	rows = new int[NUMBER_OF_VERTICIES * stride];
+    	degrees = new int[NUMBER_OF_VERTICIES];
     }
-    
+
+    /**
+     * get number of vertices
+     * 
+     * @return number of vertices (active or not)
+     */
+    public int size () {return NUMBER_OF_VERTICIES;}
+
     /**
      * Returns a list of the ID#s of the inactive vertices of the graph. If there
      * are no inactive vertices, a reference to an empty list object is returned.
@@ -40,10 +100,10 @@ public class Graph {
     public List<Integer> getUnusedVertices () {
         ArrayList<Integer> inactiveIntegers = new ArrayList<Integer>();
         for (int step = 0;step < NUMBER_OF_VERTICIES; step++)
-        	if (graph.get(step).isEmpty()) inactiveIntegers.add(step);
+        	if (degrees[step] == 0) inactiveIntegers.add(step);
         return inactiveIntegers;
     }
-    
+
     /**
      * Returns true if the graph possesses an edge directly connecting the given
      * source and destination vertices. That is, true is returned if these
@@ -54,9 +114,12 @@ public class Graph {
      * @return true if they're connected
      */
     public boolean isEdge (int source, int destination) {
-        return graph.get(source).contains(destination);
+        int degree = degrees[source];
+        for (int step = 0; step < degree; step++)
+            if (neighbor(source, step) == destination) return true;
+        return false;
     }
-    
+
     /**
      * Ensures that the graph contains an edge connecting the given source and
      * destination vertices.
@@ -65,10 +128,12 @@ public class Graph {
      * @param destination second vertex
      */
     public void addEdge (int source, int destination) {
-        graph.get(source).add(destination);
-        graph.get(destination).add(source);
+        if (isEdge(source, destination)) return;
+        thaw();
+        append(source, destination);
+        append(destination, source);
     }
-    
+
     /**
      * Ensures that the graph does not contain an edge connecting the given
      * source and destination vertices.
@@ -77,10 +142,12 @@ public class Graph {
      * @param destination second vertex
      */
     public void removeEdge (int source, int destination) {
-        graph.get(source).remove((Integer)destination);
-        graph.get(destination).remove((Integer)source);
+        if (!isEdge(source, destination)) return;
+        thaw();
+        delete(source, destination);
+        delete(destination, source);
     }
-    
+
     /**
      * Returns true if the given vertex is active within the graph.
      * 
@@ -88,9 +155,9 @@ public class Graph {
      * @return true if it has no edges
      */
     public boolean isInGraph (int vertex) {
-        return !graph.get(vertex).isEmpty();
+        return degrees[vertex] != 0;
     }
-    
+
     /**
      * Called to mark a vertex as inactive. Inactive vertices have no neighbors,
      * and thus have a degree of 0.
@@ -98,22 +165,57 @@ public class Graph {
      * @param vertex vertex to remove
      */
     public void removeVertex (int vertex) {
-        Object[] list = graph.get(vertex).toArray();
-        for (Object step:list)
-            removeEdge(vertex, (int)step);
+        thaw();
+        int base = vertex * stride;
+        while (degrees[vertex] > 0) {
+            int last = rows[base + degrees[vertex] - 1];
+            delete(vertex, last);
+            delete(last, vertex);
+        }
     }
-    
+
     /**
      * Returns a list of vertex ID#s. A vertex is in the list if it is active
-     * and adjacent to the given vertex.
+     * and adjacent to the given vertex. The list is a copy; hot paths should
+     * use degree() and neighbor() or a NeighborIterator instead.
      * 
      * @param vertex test vertex
      * @return list with indices of the vertex's neighbors
      */
     public List<Integer> getAdjacent (int vertex) {
-        return graph.get(vertex);
+        int degree = degrees[vertex];
+        ArrayList<Integer> list = new ArrayList<Integer>(degree);
+        for (int step = 0; step < degree; step++)
+            list.add(neighbor(vertex, step));
+        return list;
     }
-    
+
+    /**
+     * Copies the ID#s of the vertex's neighbors into a caller supplied buffer.
+     * 
+     * @param vertex test vertex
+     * @param out buffer with room for at least degree(vertex) entries
+     * @return number of neighbors written
+     */
+    public int getAdjacent (int vertex, int[] out) {
+        int degree = degrees[vertex];
+        for (int step = 0; step < degree; step++)
+            out[step] = neighbor(vertex, step);
+        return degree;
+    }
+
+    /**
+     * Returns one neighbor of the given vertex.
+     * 
+     * @param vertex test vertex
+     * @param index position of the neighbor (0 to degree - 1)
+     * @return ID# of the neighbor
+     */
+    public int neighbor (int vertex, int index) {
+        return offsets != null ? targets[offsets[vertex] + index] :
+            rows[vertex * stride + index];
+    }
+
     /**
      * Returns the degree of the given vertex.
      * 
@@ -121,14 +223,101 @@ public class Graph {
      * @return number of edges
      */
     public int degree (int vertex) {
-    	return graph.get(vertex).size();
+    	return degrees[vertex];
+    }
+
+    /**
+     * Creates a reusable iterator over neighbor ID#s. Calling reset() on it
+     * for each vertex visits neighbors without allocating.
+     * 
+     * @return new iterator (positioned on no vertex)
+     */
+    public NeighborIterator neighborIterator () {
+        return new NeighborIterator();
+    }
+
+    /**
+     * Packs the adjacency rows into the compressed sparse row layout.
+     */
+    public void freeze () {
+        if (offsets != null) return;
+        offsets = new int[NUMBER_OF_VERTICIES + 1];
+        for (int step = 0; step < NUMBER_OF_VERTICIES; step++)
+            offsets[step + 1] = offsets[step] + degrees[step];
+        targets = new int[offsets[NUMBER_OF_VERTICIES]];
+        for (int step = 0; step < NUMBER_OF_VERTICIES; step++)
+            System.arraycopy(rows, step * stride, targets, offsets[step],
+                    degrees[step]);
+        rows = null;
+    }
+
+    /**
+     * get frozen state
+     * 
+     * @return true if the graph is in the compressed sparse row layout
+     */
+    public boolean isFrozen () {return offsets != null;}
+
+    /**
+     * Unpacks a frozen graph back into fixed stride rows so it can change.
+     */
+    private void thaw () {
+        if (offsets == null) return;
+        rows = new int[NUMBER_OF_VERTICIES * stride];
+        for (int step = 0; step < NUMBER_OF_VERTICIES; step++)
+            System.arraycopy(targets, offsets[step], rows, step * stride,
+                    degrees[step]);
+        offsets = targets = null;
+    }
+
+    /**
+     * adds a one way edge, widening the rows if the vertex is full
+     * 
+     * @param source vertex owning the row
+     * @param destination value to append
+     */
+    private void append (int source, int destination) {
+        if (degrees[source] == stride) {
+            int[] wider = new int[NUMBER_OF_VERTICIES * stride * 2];
+            for (int step = 0; step < NUMBER_OF_VERTICIES; step++)
+                System.arraycopy(rows, step * stride, wider, step * stride * 2,
+                        degrees[step]);
+            rows = wider;
+            stride *= 2;
+        }
+        if (degrees[source] == 0) active++;
+        version++;
+        rows[source * stride + degrees[source]++] = destination;
+        maxDegree = Math.max(maxDegree, degrees[source]);
+    }
+
+    /**
+     * removes a one way edge, keeping the remaining edges in order
+     * 
+     * @param source vertex owning the row
+     * @param destination value to remove
+     */
+    private void delete (int source, int destination) {
+        int base = source * stride, end = base + degrees[source];
+        for (int step = base; step < end; step++)
+            if (rows[step] == destination) {
+                System.arraycopy(rows, step + 1, rows, step, end - step - 1);
+                if (--degrees[source] == 0) active--;
+                version++;
+                return;
+            }
     }
-    
+
     /**
-     * used to keep track of used spaces in recursion
+     * scratch stack and visit stamps reused by every traversal
      */
-    private boolean[] marked;
-    
+    private int[] stack, visited;
+
+    /**
+     * stamp written into visited by the current traversal
+     */
+    private int epoch;
+
     /**
      * Returns true if the graph is connected; that is, if every active vertex
      * is reachable from every other active vertex.
@@ -136,40 +325,122 @@ public class Graph {
      * @return true if all spaces are connected
      */
     public boolean connected () {
-        
-        //marking to stop recursion
-        marked = new boolean[NUMBER_OF_VERTICIES];
-        int index = 0;
-        
-        //find first used vertex
-        while (index < NUMBER_OF_VERTICIES && graph.get(index).isEmpty())
-            index++;
-        
-        //use found index for recursion entry point
-        traverseGraph(index);
-        
-        //test to see if any remaining vertices are active
-        for (; index < NUMBER_OF_VERTICIES; index++)
-        	if (!marked[index] && !graph.get(index).isEmpty())
-        		return false;
-        
-        //default behavior
-        return true;
-    }
-    
-    /**
-     * recursive test for connected vertices
-     * 
-     * @param index starting point
-     */
-    private void traverseGraph(int index) {
-    	
-        //marks each starting point
-        marked[index] = true;
-    	
-    	//traverses all previously untraversed edges
-    	for (Integer i:graph.get(index))
-    		if (!marked[i]) traverseGraph(i);
-    }
-    
+        long start = Metrics.start();
+
+        //an empty graph is trivially connected
+        boolean connected = true;
+        if (active > 0) {
+
+            //find first used vertex
+            int index = 0;
+            while (degrees[index] == 0)
+                index++;
+
+            //connected if every active vertex can be reached from it
+            connected = reach(index, active) == active;
+        }
+        Metrics.CONNECTED.stop(start);
+        return connected;
+    }
+
+    /**
+     * Counts the vertices reachable from the starting vertex (itself included)
+     * with an iterative depth first search. The search stops as soon as target
+     * vertices have been reached, so the result never exceeds target. Repeated
+     * calls reuse the same scratch buffers and do not allocate.
+     * 
+     * @param start starting vertex
+     * @param target number of vertices after which the search can stop
+     * @return number of vertices reached
+     */
+    public int reach (int start, int target) {
+
+        //lazily create scratch space and start a new visit epoch
+        if (visited == null) {
+            visited = new int[NUMBER_OF_VERTICIES];
+            stack = new int[NUMBER_OF_VERTICIES];
+        }
+        if (++epoch == 0) {
+            Arrays.fill(visited, 0);
+            epoch = 1;
+        }
+
+        //seed the stack with the starting point
+        int top = 0, count = 1;
+        visited[start] = epoch;
+        stack[top++] = start;
+
+        //traverses all previously untraversed edges
+        while (top > 0 && count < target) {
+            int index = stack[--top], degree = degrees[index];
+            for (int step = 0; step < degree; step++) {
+                int i = neighbor(index, step);
+                if (visited[i] != epoch) {
+                    visited[i] = epoch;
+                    stack[top++] = i;
+                    if (++count == target) break;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * get number of active vertices
+     * 
+     * @return number of vertices with at least one edge
+     */
+    public int getActiveVertices () {return active;}
+
+    /**
+     * get modification counter (changes whenever an edge is added or removed)
+     * 
+     * @return modification counter
+     */
+    public int getVersion () {return version;}
+
+    /**
+     * get largest degree any vertex has reached (a safe size for neighbor
+     * buffers)
+     * 
+     * @return largest degree
+     */
+    public int getMaxDegree () {return maxDegree;}
+
+    /**
+     * Allocation free iterator over the neighbors of one vertex
+     * 
+     * @author Phillip Benoit
+     * 
+     */
+    public class NeighborIterator implements PrimitiveIterator.OfInt {
+
+        /**
+         * vertex being visited and position of the next neighbor
+         */
+        private int vertex, index, degree;
+
+        /**
+         * positions the iterator on a new vertex
+         * 
+         * @param v vertex whose neighbors will be visited
+         * @return this iterator
+         */
+        public NeighborIterator reset (int v) {
+            vertex = v;
+            index = 0;
+            degree = degrees[v];
+            return this;
+        }
+
+        @Override
+        public boolean hasNext () {return index < degree;}
+
+        @Override
+        public int nextInt () {
+            if (index >= degree) throw new NoSuchElementException();
+            return neighbor(vertex, index++);
+        }
+    }
+
 }
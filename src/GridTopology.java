@@ -0,0 +1,231 @@
+import java.util.LinkedHashMap;
+
+/**
+ * Rectangular boards: the classic four neighbor square grid, squares that
+ * also touch diagonally, and hexagons. Neighbor tables are built once per
+ * shape and size and shared by every Map that uses them; the most recently
+ * used grids are kept for reuse, and a grid dropped from the cache stays
+ * valid for the boards still using it.
+ *
+ * Hexagons use "odd row" offset coordinates: every odd row is shifted half a
+ * cell to the right, so a cell touches two cells in the row above, two in
+ * the row below and one on each side.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class GridTopology implements Topology {
+
+    /**
+     * kinds of grid
+     */
+    public enum Shape {
+
+        /**
+         * north, south, east and west
+         */
+        SQUARE(4),
+
+        /**
+         * square plus the four diagonals
+         */
+        DIAGONAL(8),
+
+        /**
+         * hexagons in odd row offset layout
+         */
+        HEX(6);
+
+        /**
+         * neighbor slots per cell
+         */
+        private final int degree;
+
+        /**
+         * constructor
+         *
+         * @param degree neighbor slots per cell
+         */
+        Shape (int degree) {this.degree = degree;}
+    }
+
+    /**
+     * number of grids kept for reuse
+     */
+    private static final int CACHED = 16;
+
+    /**
+     * most recently used grids, by key() (guarded by itself)
+     */
+    private static final LinkedHashMap<Long, GridTopology> GRIDS =
+            new LinkedHashMap<Long, GridTopology>(CACHED * 2, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry (java.util.Map.Entry<Long, GridTopology> eldest) {
+                    return size() > CACHED;
+                }
+            };
+
+    /**
+     * kind of grid
+     */
+    private final Shape shape;
+
+    /**
+     * size of the grid
+     */
+    private final int rows, columns;
+
+    /**
+     * neighbor table
+     */
+    private final int[] table;
+
+    /**
+     * constructor
+     *
+     * @param shape kind of grid
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    private GridTopology (Shape shape, int rows, int columns) {
+        if (rows < 1 || columns < 1)
+            throw new IllegalArgumentException("grid must have at least one cell");
+        this.shape = shape;
+        this.rows = rows;
+        this.columns = columns;
+        table = new int[rows * columns * shape.degree];
+        for (int index = 0; index < rows * columns; index++) fill(index);
+    }
+
+    /**
+     * Gets the shared grid of a shape and size.
+     *
+     * @param shape kind of grid
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return grid topology
+     */
+    public static GridTopology of (Shape shape, int rows, int columns) {
+        long key = key(shape, rows, columns);
+        synchronized (GRIDS) {
+            GridTopology grid = GRIDS.get(key);
+            if (grid != null) return grid;
+        }
+
+        //build the table without holding the lock, so a large grid does not
+        //hold up every other lookup (if two threads race, the first one in
+        //is kept)
+        GridTopology built = new GridTopology(shape, rows, columns);
+        synchronized (GRIDS) {
+            GridTopology grid = GRIDS.putIfAbsent(key, built);
+            return grid != null ? grid : built;
+        }
+    }
+
+    /**
+     * packs a shape and size into a cache key (rows and columns are at most
+     * 31 bits each, leaving the top two bits for the shape)
+     *
+     * @param shape kind of grid
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return cache key
+     */
+    private static long key (Shape shape, int rows, int columns) {
+        return (long) shape.ordinal() << 62 | (long) rows << 31 | columns;
+    }
+
+    /**
+     * get the four neighbor square grid of a size
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return grid topology
+     */
+    public static GridTopology square (int rows, int columns) {
+        return of(Shape.SQUARE, rows, columns);
+    }
+
+    /**
+     * get kind of grid
+     *
+     * @return kind of grid
+     */
+    public Shape getShape () {return shape;}
+
+    @Override
+    public int getRows () {return rows;}
+
+    @Override
+    public int getColumns () {return columns;}
+
+    @Override
+    public int getMaxDegree () {return shape.degree;}
+
+    /**
+     * Gets the neighbor table. It is the grid's own array, shared by every
+     * board of this shape and size, so callers may only read it.
+     *
+     * @return neighbor table
+     */
+    @Override
+    public int[] getNeighbors () {return table;}
+
+    /**
+     * fills in the slots of one cell
+     *
+     * @param index cell ID#
+     */
+    private void fill (int index) {
+        int row = index / columns, col = index % columns, base = index * shape.degree;
+        switch (shape) {
+        case SQUARE:
+        case DIAGONAL:
+
+            //up, down, right and left (the order Map has always used)
+            table[base] = at(row - 1, col);
+            table[base + 1] = at(row + 1, col);
+            table[base + 2] = at(row, col + 1);
+            table[base + 3] = at(row, col - 1);
+            if (shape == Shape.SQUARE) break;
+
+            //corners
+            table[base + 4] = at(row - 1, col - 1);
+            table[base + 5] = at(row - 1, col + 1);
+            table[base + 6] = at(row + 1, col - 1);
+            table[base + 7] = at(row + 1, col + 1);
+            break;
+        case HEX:
+
+            //odd rows are shifted right, so their diagonals lean right
+            int shift = row % 2;
+            table[base] = at(row - 1, col - 1 + shift);
+            table[base + 1] = at(row - 1, col + shift);
+            table[base + 2] = at(row, col + 1);
+            table[base + 3] = at(row + 1, col + shift);
+            table[base + 4] = at(row + 1, col - 1 + shift);
+            table[base + 5] = at(row, col - 1);
+            break;
+        }
+    }
+
+    /**
+     * converts a grid position to an ID#
+     *
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return ID# (-1 if off the grid)
+     */
+    private int at (int row, int col) {
+        return row < 0 || row >= rows || col < 0 || col >= columns ? -1
+                : row * columns + col;
+    }
+
+    @Override
+    public String toString () {
+        return shape + " " + rows + "x" + columns;
+    }
+
+}
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a strategy that might be slow or never return, so it cannot stall
+ * the game that calls it. Each willAttack() runs on the guard's own daemon
+ * thread under a deadline; a call that misses it counts as a pass (false)
+ * and as a timeout. A call that is still running when the strategy's next
+ * turn comes is not waited for again: the strategy passes at once until it
+ * returns, so a bot stuck in a loop costs one thread and nothing more. The
+ * late result is thrown away, but the stuck call may go on reading the
+ * board while the game moves on, and should not expect it to be consistent.
+ *
+ * The latency of every call (timed out or not) is recorded in a Metrics
+ * probe named after the strategy's class, shared by every guard of that
+ * class, and report() lists p50, p99, max and timeouts per class.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class GuardedStrategy implements Strategy {
+
+    /**
+     * default deadline in milliseconds (set with -Dbones.deadline=ms)
+     */
+    public static final long DEADLINE = Long.getLong("bones.deadline", 100);
+
+    /**
+     * timeouts by strategy class
+     */
+    private static final ConcurrentHashMap<String, LongAdder> TIMEOUTS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * strategy being guarded
+     */
+    private final Strategy inner;
+
+    /**
+     * deadline in nanoseconds
+     */
+    private final long deadline;
+
+    /**
+     * latencies of the strategy's class
+     */
+    private final Metrics.Probe latency;
+
+    /**
+     * timeouts of the strategy's class
+     */
+    private final LongAdder timeouts;
+
+    /**
+     * thread running the calls (stops after a second idle)
+     */
+    private final ThreadPoolExecutor worker;
+
+    /**
+     * the call, reading the board handed over in board
+     */
+    private final Callable<Boolean> call;
+
+    /**
+     * board for the next call
+     */
+    private volatile Map board;
+
+    /**
+     * true while a call is running on the worker
+     */
+    private volatile boolean busy;
+
+    /**
+     * constructor using the default deadline
+     *
+     * @param inner strategy to guard
+     */
+    public GuardedStrategy (Strategy inner) {
+        this(inner, DEADLINE);
+    }
+
+    /**
+     * constructor
+     *
+     * @param inner strategy to guard
+     * @param deadlineMillis time allowed for each willAttack() call
+     */
+    public GuardedStrategy (Strategy inner, long deadlineMillis) {
+        if (deadlineMillis <= 0)
+            throw new IllegalArgumentException("deadline must be positive");
+        this.inner = inner;
+        deadline = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        String name = inner.getClass().getSimpleName();
+        latency = Metrics.probe("strategy " + name);
+        timeouts = TIMEOUTS.computeIfAbsent(name, key -> new LongAdder());
+        worker = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    Thread t = new Thread(task, "guard " + name);
+                    t.setDaemon(true);
+                    return t;
+                });
+        worker.allowCoreThreadTimeOut(true);
+        call = () -> {
+            busy = true;
+            try {
+                return inner.willAttack(board);
+            } finally {
+                busy = false;
+            }
+        };
+    }
+
+    /**
+     * get strategy being guarded
+     *
+     * @return guarded strategy
+     */
+    public Strategy getInner () {return inner;}
+
+    @Override
+    public void setPlayer (Player whom) {inner.setPlayer(whom);}
+
+    /**
+     * Asks the guarded strategy whether to attack, giving up at the
+     * deadline. Exceptions thrown by the strategy are passed on.
+     *
+     * @param board current board
+     * @return the strategy's answer, or false if it missed the deadline
+     */
+    @Override
+    public boolean willAttack (Map board) {
+        if (busy) {
+            timeouts.increment();
+            return false;
+        }
+        this.board = board;
+        long start = System.nanoTime();
+        Future<Boolean> pending = worker.submit(call);
+        try {
+            boolean attack = pending.get(deadline, TimeUnit.NANOSECONDS);
+            latency.record(System.nanoTime() - start);
+            return attack;
+        } catch (TimeoutException e) {
+            pending.cancel(true);
+            latency.record(System.nanoTime() - start);
+            timeouts.increment();
+            return false;
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public Territory getAttacker () {return inner.getAttacker();}
+
+    @Override
+    public Territory getDefender () {return inner.getDefender();}
+
+    /**
+     * Counts the calls of a strategy class that missed the deadline.
+     *
+     * @param name simple name of the strategy class
+     * @return number of timeouts
+     */
+    public static long getTimeouts (String name) {
+        LongAdder count = TIMEOUTS.get(name);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Lists the decision latencies and timeouts of every guarded strategy
+     * class.
+     *
+     * @return one line per class
+     */
+    public static String report () {
+        List<String> names = new ArrayList<>(TIMEOUTS.keySet());
+        names.sort(null);
+        StringBuilder out = new StringBuilder();
+        for (String name: names) {
+            Metrics.Histogram h = Metrics.probe("strategy " + name).snapshot();
+            out.append(String.format("%-24s %12d calls  p50 %9d ns  p99 %9d ns  max %11d ns  timeouts %d%n",
+                    name, h.getCount(), h.getPercentile(50), h.getPercentile(99),
+                    h.getMax(), getTimeouts(name)));
+        }
+        return out.toString();
+    }
+
+}
@@ -1,6 +1,8 @@
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Data structure for a bones battle map
@@ -10,6 +12,23 @@ import java.util.Random;
  */
 public class Map {
 
+	/**
+	 * ways of choosing the unused territories of a new board
+	 */
+	public enum Generator {
+		
+		/**
+		 * remove random cells that do not disconnect the board
+		 */
+		LEGACY,
+		
+		/**
+		 * remove random leaves of a random spanning tree of the grid, which
+		 * never disconnects the board (linear time, no retries)
+		 */
+		FAST
+	}
+
     /**
      * constants
      */
@@ -22,7 +41,7 @@ public class Map {
 	/**
 	 * random number generator
 	 */
-	private Random RNG;
+	private RandomGenerator RNG;
 
 	/**
 	 * list of players
@@ -30,7 +49,22 @@ public class Map {
 	private ArrayList<Player> players;
 
 	/**
-	 * map data structure
+	 * owner of each territory by ID# (player index plus one, 0 for none)
+	 */
+	private final byte[] owners;
+
+	/**
+	 * number of dice on each territory by ID#
+	 */
+	private final byte[] dice;
+
+	/**
+	 * Territory views handed out so far, by ID# (created on first use)
+	 */
+	private final Territory[] views;
+
+	/**
+	 * grid of territory views (built the first time getMap() is called)
 	 */
 	private Territory[][] map;
 
@@ -39,6 +73,88 @@ public class Map {
 	 */
 	private Graph neighbor_graph;
 
+	/**
+	 * players in constructor order (position is the player's index)
+	 */
+	private final Player[] roster;
+
+	/**
+	 * index of each player in the roster, looked up by identity
+	 */
+	private final IdentityHashMap<Player, Integer> player_index;
+
+	/**
+	 * ID#s of the territories owned by each player in increasing order (the
+	 * first holding_count[p] entries of each row are valid; rows grow and
+	 * shrink with the player's property)
+	 */
+	private final int[][] holdings;
+
+	/**
+	 * number of territories and dice owned by each player
+	 */
+	private final int[] holding_count, dice_count;
+
+	/**
+	 * room each per player row starts with
+	 */
+	private static final int ROW = 16;
+
+	/**
+	 * connected clusters of each player's territories
+	 */
+	private ClusterIndex clusters;
+
+	/**
+	 * number of neighbors of each territory with a different owner
+	 */
+	private final int[] enemy_count;
+
+	/**
+	 * ID#s of each player's border territories, those with at least one
+	 * enemy neighbor (the first border_count[p] entries of each row are
+	 * valid; rows grow and shrink with the border), and the position of each
+	 * territory in its owner's row (-1 if it is not on the border)
+	 */
+	private final int[][] border;
+	private final int[] border_count, border_slot;
+
+	/**
+	 * ID#s of each player's territories with room for another die (the
+	 * first open_count[p] entries of each row are valid; rows grow and
+	 * shrink with the list), and the position of each territory in its
+	 * owner's row (-1 if it is full or unowned)
+	 */
+	private final int[][] open;
+	private final int[] open_count, open_slot;
+
+	/**
+	 * undo journal: one packed entry per change made while journaling is on,
+	 * holding the ID# in bits 16 and up (so any int ID# fits), the previous
+	 * owner byte in bits 8 to 15 and the previous dice in bits 0 to 7
+	 */
+	private long[] journal = new long[64];
+
+	/**
+	 * number of entries in the journal
+	 */
+	private int journal_size;
+
+	/**
+	 * true while changes are being written to the journal
+	 */
+	private boolean journaling;
+
+	/**
+	 * generator used for new boards
+	 */
+	private Generator generator;
+
+	/**
+	 * shape of the board
+	 */
+	private final Topology topology;
+
 	/**
 	 * constructor
 	 * 
@@ -49,34 +165,267 @@ public class Map {
 	 * @param maxDice max number of dice per territory
 	 */
 	public Map (ArrayList<Player> players, int rows, int columns, int victims, int maxDice) {
+		this(players, rows, columns, victims, maxDice, new Random());
+	}
+
+	/**
+	 * constructor with an explicit random number generator (the same seeded
+	 * generator always produces the same board)
+	 * 
+	 * @param players list of players
+	 * @param rows number of rows
+	 * @param columns number of columns
+	 * @param victims number of unused spaces
+	 * @param maxDice max number of dice per territory
+	 * @param rng source of randomness for board generation
+	 */
+	public Map (ArrayList<Player> players, int rows, int columns, int victims,
+	        int maxDice, RandomGenerator rng) {
+		this(players, rows, columns, victims, maxDice, rng, Generator.LEGACY);
+	}
+
+	/**
+	 * constructor with an explicit random number generator and board
+	 * generator
+	 * 
+	 * @param players list of players
+	 * @param rows number of rows
+	 * @param columns number of columns
+	 * @param victims number of unused spaces
+	 * @param maxDice max number of dice per territory
+	 * @param rng source of randomness for board generation
+	 * @param mode how to choose the unused spaces
+	 */
+	public Map (ArrayList<Player> players, int rows, int columns, int victims,
+	        int maxDice, RandomGenerator rng, Generator mode) {
+		this(players, GridTopology.square(rows, columns), victims, maxDice, rng, mode);
+	}
+
+	/**
+	 * constructor for a board of any shape
+	 * 
+	 * @param players list of players
+	 * @param shape board shape (square grid, hexagons, regions, ...)
+	 * @param victims number of unused spaces
+	 * @param maxDice max number of dice per territory
+	 * @param rng source of randomness for board generation
+	 * @param mode how to choose the unused spaces
+	 */
+	public Map (ArrayList<Player> players, Topology shape, int victims,
+	        int maxDice, RandomGenerator rng, Generator mode) {
 		
 	    //assign passed and default values
 	    this.players = players;
-		ROWS = rows;
-		COLUMNS = columns;
+	    generator = mode;
+	    topology = shape;
+		ROWS = shape.getRows();
+		COLUMNS = shape.getColumns();
 		VICTIMS = victims;
 		MAXDICE = maxDice;
 		NUMTERRITORIES = ROWS * COLUMNS;
 		OCCUPIED = NUMTERRITORIES - VICTIMS;
-		RNG = new Random();
-		map = new Territory[ROWS][COLUMNS];
-		int id_counter = 0;
-		for (int x = 0;x<ROWS;x++)
-			for (int y = 0; y<COLUMNS; y++)
-				map[x][y] = new Territory(this, null, maxDice, id_counter++);
+		roster = players.toArray(new Player[0]);
+		if (roster.length > Byte.MAX_VALUE - 1 || MAXDICE > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("too many players or dice");
+		player_index = new IdentityHashMap<>(roster.length * 2);
+		for (int p = 0; p < roster.length; p++) player_index.put(roster[p], p);
+		holdings = new int[roster.length][ROW];
+		holding_count = new int[roster.length];
+		dice_count = new int[roster.length];
+		enemy_count = new int[NUMTERRITORIES];
+		border = new int[roster.length][ROW];
+		border_count = new int[roster.length];
+		border_slot = new int[NUMTERRITORIES];
+		open = new int[roster.length][ROW];
+		open_count = new int[roster.length];
+		open_slot = new int[NUMTERRITORIES];
+		owners = new byte[NUMTERRITORIES];
+		dice = new byte[NUMTERRITORIES];
+		views = new Territory[NUMTERRITORIES];
+		
+		//setup board
+		generate(rng);
+	}
+
+	/**
+	 * copy constructor: a board with the same players, graph, owners and dice
+	 * that can then change independently. The copy shares the original's
+	 * frozen graph, so neither board should change its graph afterward.
+	 * 
+	 * @param other board to copy
+	 */
+	public Map (Map other) {
+	    this.players = other.players;
+		ROWS = other.ROWS;
+		COLUMNS = other.COLUMNS;
+		VICTIMS = other.VICTIMS;
+		MAXDICE = other.MAXDICE;
+		NUMTERRITORIES = other.NUMTERRITORIES;
+		OCCUPIED = other.OCCUPIED;
+		RNG = other.RNG;
+		generator = other.generator;
+		topology = other.topology;
+		roster = other.roster;
+		player_index = other.player_index;
+		holdings = new int[roster.length][ROW];
+		holding_count = new int[roster.length];
+		dice_count = new int[roster.length];
+		enemy_count = new int[NUMTERRITORIES];
+		border = new int[roster.length][ROW];
+		border_count = new int[roster.length];
+		border_slot = new int[NUMTERRITORIES];
+		Arrays.fill(border_slot, -1);
+		open = new int[roster.length][ROW];
+		open_count = new int[roster.length];
+		open_slot = new int[NUMTERRITORIES];
+		Arrays.fill(open_slot, -1);
+		owners = new byte[NUMTERRITORIES];
+		dice = other.dice.clone();
+		views = new Territory[NUMTERRITORIES];
+		neighbor_graph = other.neighbor_graph;
+		clusters = new ClusterIndex(neighbor_graph, roster.length);
+		
+		//hand out the territories so the indexes are built as usual
+		for (int id = 0; id < NUMTERRITORIES; id++)
+			setOwnerIndex(id, other.owners[id] - 1);
+	}
+
+	/**
+	 * Discards the current board and generates a new one in place, reusing the
+	 * existing storage and territory objects.
+	 * 
+	 * @param rng source of randomness for board generation
+	 */
+	public void generate (RandomGenerator rng) {
+		RNG = rng;
+		clearBoard();
 		
 		//setup board
-		neighbor_graph = constructGraph(rows, columns, victims);
+		neighbor_graph = constructGraph(topology, VICTIMS);
+		neighbor_graph.freeze();
+		clusters = new ClusterIndex(neighbor_graph, roster.length);
 		partitionTerritories();
 		distributeDice();
 	}
 
 	/**
-	 * get underlying data structure
+	 * Discards the current board and replaces it with a stored one, reusing
+	 * the existing storage and territory objects. The graph is rebuilt from
+	 * the stored active cells, adding edges in the stored generator's order.
+	 * 
+	 * @param view stored board
+	 * @throws IllegalArgumentException if the stored board does not have this
+	 * board's size, unused spaces, dice limit, number of players or topology, or
+	 * a territory has no owner or more than MAXDICE dice
+	 */
+	public void load (BoardView view) {
+		GridTopology.Shape shape = topology instanceof GridTopology
+				? ((GridTopology) topology).getShape() : null;
+		if (view.getRows() != ROWS || view.getColumns() != COLUMNS
+				|| view.getVictims() != VICTIMS || view.getMaxDice() != MAXDICE
+				|| view.getPlayerCount() != roster.length || view.getShape() != shape
+				|| shape == null && view.getChecksum() != BoardView.checksum(topology))
+			throw new IllegalArgumentException("stored board does not fit this map");
+		clearBoard();
+		
+		//rebuild the graph
+		int[] grid = topology.getNeighbors();
+		int stride = topology.getMaxDegree();
+		Graph g = new Graph(NUMTERRITORIES, stride);
+		if (view.getGenerator() == Generator.FAST) {
+			for (int cell = 0; cell < NUMTERRITORIES; cell++) {
+				if (!view.isActive(cell)) continue;
+				for (int slot = (cell + 1) * stride - 1; slot >= cell * stride; slot--)
+					if (grid[slot] > cell && view.isActive(grid[slot]))
+						g.addEdge(cell, grid[slot]);
+			}
+		} else {
+			if (marked == null || marked.length != NUMTERRITORIES)
+				marked = new boolean[NUMTERRITORIES];
+			else Arrays.fill(marked, false);
+			for (int cell = 0; cell < NUMTERRITORIES; cell++)
+				if (view.isActive(cell)) activateTerritory(cell, g, topology);
+		}
+		if (g.getActiveVertices() != NUMTERRITORIES - VICTIMS || !g.connected())
+			throw new IllegalArgumentException("stored board is not a connected board of "
+					+ (NUMTERRITORIES - VICTIMS) + " territories");
+		neighbor_graph = g;
+		neighbor_graph.freeze();
+		clusters = new ClusterIndex(neighbor_graph, roster.length);
+		
+		//owners and dice
+		for (int id = 0; id < NUMTERRITORIES; id++) {
+			if (!g.isInGraph(id)) continue;
+			int owner = view.getOwnerIndex(id);
+			if (owner < 0 || owner >= roster.length)
+				throw new IllegalArgumentException("territory " + id + " has no valid owner");
+			int d = view.getDice(id);
+			if (d > MAXDICE)
+				throw new IllegalArgumentException("territory " + id + " has " + d
+						+ " dice, more than this map's " + MAXDICE);
+			setDice(id, d);
+			setOwnerIndex(id, owner);
+		}
+	}
+
+	/**
+	 * clears owners, dice and the indexes built from them before a new board
+	 */
+	private void clearBoard () {
+		clusters = null;
+		clearJournal();
+		Arrays.fill(owners, (byte) 0);
+		Arrays.fill(dice, (byte) MAXDICE);
+		Arrays.fill(holding_count, 0);
+		for (int p = 0; p < roster.length; p++) {
+			if (holdings[p].length > ROW) holdings[p] = new int[ROW];
+			if (border[p].length > ROW) border[p] = new int[ROW];
+			if (open[p].length > ROW) open[p] = new int[ROW];
+		}
+		Arrays.fill(dice_count, 0);
+		Arrays.fill(enemy_count, 0);
+		Arrays.fill(border_count, 0);
+		Arrays.fill(border_slot, -1);
+		Arrays.fill(open_count, 0);
+		Arrays.fill(open_slot, -1);
+	}
+
+	/**
+	 * get grid of territories (creates a view for every territory the first
+	 * time it is called)
+	 * 
+	 * @return grid of territories
+	 */
+	public Territory[][] getMap () {
+		if (map == null) {
+			map = new Territory[ROWS][COLUMNS];
+			for (int x = 0;x<ROWS;x++)
+				for (int y = 0; y<COLUMNS; y++)
+					map[x][y] = getTerritory(getTerritoryId(x, y));
+		}
+		return map;
+	}
+
+	/**
+	 * get shape of the board
 	 * 
-	 * @return underlying data structure
+	 * @return shape of the board
 	 */
-	public Territory[][] getMap () {return map;}
+	public Topology getTopology () {return topology;}
+
+	/**
+	 * get generator used for new boards
+	 * 
+	 * @return generator used for new boards
+	 */
+	public Generator getGenerator () {return generator;}
+
+	/**
+	 * set generator used by the following calls to generate()
+	 * 
+	 * @param mode how to choose the unused spaces
+	 */
+	public void setGenerator (Generator mode) {generator = mode;}
 
 	/**
 	 * get data structure representing map connections
@@ -92,18 +441,143 @@ public class Map {
 	 * @param column y coordinate of territory
 	 * @return specified territory
 	 */
-	public Territory getTerritory (int row, int column) {return map[row][column];}
+	public Territory getTerritory (int row, int column) {
+		return getTerritory(getTerritoryId(row, column));
+	}
 
 	/**
-	 * calculates x/y coordinate from passed index value
+	 * get a single territory by ID# (the same view object is returned for
+	 * every call with the same ID#)
 	 * 
-	 * @param index one dimensional value
+	 * @param index one dimensional value (territory ID#)
 	 * @return specified territory
 	 */
-	private Territory getTerritory (int index) {
-		return getTerritory(index/COLUMNS, index%COLUMNS);
+	public Territory getTerritory (int index) {
+		Territory t = views[index];
+		if (t == null) views[index] = t = new Territory(this, index);
+		return t;
+	}
+
+	/**
+	 * get owner of a territory without going through a Territory view
+	 * 
+	 * @param id territory ID#
+	 * @return owning player's index (-1 if unowned)
+	 */
+	public int getOwnerIndex (int id) {return owners[id] - 1;}
+
+	/**
+	 * get owner of a territory
+	 * 
+	 * @param id territory ID#
+	 * @return owning player (null if unowned)
+	 */
+	public Player getOwner (int id) {
+		return owners[id] == 0 ? null : roster[owners[id] - 1];
 	}
 
+	/**
+	 * get number of dice on a territory without going through a Territory view
+	 * 
+	 * @param id territory ID#
+	 * @return number of dice
+	 */
+	public int getDice (int id) {return dice[id];}
+
+	/**
+	 * Starts (or continues) recording changes to the board and returns a
+	 * position in the record. Passing the position to undo() later puts every
+	 * territory changed since then back the way it was, in time proportional
+	 * to the number of changes. Search based strategies can apply a move,
+	 * look at the result and roll it back without copying the board.
+	 * 
+	 * @return journal position to undo back to
+	 */
+	public int mark () {
+		journaling = true;
+		return journal_size;
+	}
+
+	/**
+	 * Rolls the board back to a position returned by mark(). The territories
+	 * get back their owners and dice.
+	 * 
+	 * @param position journal position from mark()
+	 */
+	public void undo (int position) {
+		boolean was_journaling = journaling;
+		journaling = false;
+		while (journal_size > position) {
+			long entry = journal[--journal_size];
+			int id = (int) (entry >>> 16);
+			setOwnerIndex(id, (int) (entry >>> 8 & 0xFF) - 1);
+			setDice(id, (int) (entry & 0xFF));
+		}
+		journaling = was_journaling;
+	}
+
+	/**
+	 * Stops recording changes and forgets the record (the current board is
+	 * kept).
+	 */
+	public void clearJournal () {
+		journaling = false;
+		journal_size = 0;
+	}
+
+	/**
+	 * Copies the owners and dice of every territory (O(cells)); the copy can
+	 * be put back with restore(). Prefer mark() and undo() when only a few
+	 * territories change.
+	 * 
+	 * @return copy of the board state
+	 */
+	public byte[] snapshot () {
+		byte[] copy = Arrays.copyOf(owners, NUMTERRITORIES * 2);
+		System.arraycopy(dice, 0, copy, NUMTERRITORIES, NUMTERRITORIES);
+		return copy;
+	}
+
+	/**
+	 * Puts back a copy made by snapshot(), touching only the territories that
+	 * differ so the per player indexes stay current.
+	 * 
+	 * @param copy board state from snapshot()
+	 */
+	public void restore (byte[] copy) {
+		for (int id = 0; id < NUMTERRITORIES; id++) {
+			setOwnerIndex(id, copy[id] - 1);
+			setDice(id, copy[NUMTERRITORIES + id]);
+		}
+	}
+
+	/**
+	 * adds the current state of a territory to the undo journal
+	 * 
+	 * @param id territory ID#
+	 */
+	private void log(int id) {
+		if (journal_size == journal.length)
+			journal = Arrays.copyOf(journal, journal_size * 2);
+		journal[journal_size++] = (long) id << 16 | (owners[id] & 0xFF) << 8
+		        | (dice[id] & 0xFF);
+	}
+
+	/**
+	 * get player by index
+	 * 
+	 * @param index player index (position in the list given to the constructor)
+	 * @return player
+	 */
+	public Player getPlayer (int index) {return roster[index];}
+
+	/**
+	 * get number of players
+	 * 
+	 * @return number of players
+	 */
+	public int getPlayerCount () {return roster.length;}
+
 	/**
      * Given the row and column of a territory, compute and return the territorys
      * ID#. The Territory class supplies getRow() and getCol() methods; see
@@ -124,7 +598,8 @@ public class Map {
 	 * @return number of territories the test player controls
 	 */
 	public int countTerritories (Player player) {
-		return getPropertyOf(player).size();        
+		int p = playerIndex(player);
+		return p < 0 ? 0 : holding_count[p];
 	}
 
 	/**
@@ -135,38 +610,315 @@ public class Map {
 	 * @return total of the player's dice
 	 */
 	public int countDice (Player player) {
-		
-	    //get list of territories
-	    ArrayList<Territory> propety = getPropertyOf(player);
-		
-	    //add dice from every territory
-	    int counter = 0;
-		for (Territory t: propety)
-			counter += t.getDice();
-
-		//return total
-		return counter;        
+		int p = playerIndex(player);
+		return p < 0 ? 0 : dice_count[p];
 	}
 
 	/**
      * Construct and return a reference to an ArrayList of Territory object
      * references. The territories referenced by the list are those
      * currently owned by the given player.
+	 * The list is in ID# order (row by row).
 	 * 
 	 * @param player test player
 	 * @return list of all properties owned by the player
 	 */
 	public ArrayList<Territory> getPropertyOf(Player player) {
-		ArrayList<Territory> list = new ArrayList<>();
-		for (Territory[] row: map)
-			for (Territory t: row)
-				if (t.getOwner() == player) list.add(t);
+		long start = Metrics.start();
+		int p = playerIndex(player);
+		int size = p < 0 ? 0 : holding_count[p];
+		ArrayList<Territory> list = new ArrayList<>(size);
+		for (int step = 0; step < size; step++)
+			list.add(getTerritory(holdings[p][step]));
+		Metrics.GET_PROPERTY_OF.stop(start);
 		return list;        
 	}
 
+	/**
+	 * Returns one of the territories owned by the given player without
+	 * building a list. Together with countTerritories() this walks a
+	 * player's property in the same order as getPropertyOf().
+	 * 
+	 * @param player test player
+	 * @param index position in the player's property (0 to
+	 * countTerritories(player) - 1)
+	 * @return territory at that position
+	 */
+	public Territory getProperty(Player player, int index) {
+		return getTerritory(holdings[playerIndex(player)][index]);
+	}
+
+	/**
+	 * Gets the position of a territory in its owner's property, the order
+	 * getPropertyOf() and getProperty() list it in (a binary search; since
+	 * the property is in ID# order, comparing ID#s gives the same order).
+	 * 
+	 * @param id territory ID#
+	 * @return position in the owner's property (negative if unowned)
+	 */
+	public int getPropertyIndex(int id) {
+		int p = owners[id] - 1;
+		return p < 0 ? -1 : Arrays.binarySearch(holdings[p], 0, holding_count[p], id);
+	}
+
+	/**
+	 * Determine and return the quantity of the given player's territories
+	 * that have at least one enemy neighbor. The border is kept up to date as
+	 * territories change hands, touching only the territory and its
+	 * neighbors.
+	 * 
+	 * @param player test player
+	 * @return number of border territories the test player controls
+	 */
+	public int countBorder(Player player) {
+		int p = playerIndex(player);
+		return p < 0 ? 0 : border_count[p];
+	}
+
+	/**
+	 * Returns one of the given player's border territories by ID#. Together
+	 * with countBorder() this walks every territory the player could attack
+	 * from (in no particular order) without scanning its interior.
+	 * 
+	 * @param player test player
+	 * @param index position in the player's border (0 to
+	 * countBorder(player) - 1)
+	 * @return ID# of the border territory at that position
+	 */
+	public int getBorder(Player player, int index) {
+		return border[playerIndex(player)][index];
+	}
+
+	/**
+	 * Counts the given player's territories with room for another die. The
+	 * list is kept up to date as dice and owners change, so reinforcements
+	 * can pick from it directly instead of retrying full territories.
+	 * 
+	 * @param player test player
+	 * @return number of territories below MAXDICE
+	 */
+	public int countOpen(Player player) {
+		int p = playerIndex(player);
+		return p < 0 ? 0 : open_count[p];
+	}
+
+	/**
+	 * Gets one of the given player's territories with room for another die.
+	 * Together with countOpen() this walks them (in no particular order).
+	 * 
+	 * @param player test player
+	 * @param index position in the list (0 to countOpen(player) - 1)
+	 * @return ID# of the territory at that position
+	 */
+	public int getOpen(Player player, int index) {
+		return open[playerIndex(player)][index];
+	}
+
+	/**
+	 * Counts a territory's neighbors owned by a different player (or by no
+	 * one) without listing them.
+	 * 
+	 * @param id territory ID#
+	 * @return number of enemy neighbors
+	 */
+	public int countEnemyNeighbors(int id) {return enemy_count[id];}
+
+	/**
+	 * Finds the position of the player in the list given to the constructor
+	 * (one hash lookup, however many players there are).
+	 * 
+	 * @param player test player
+	 * @return index of the player (-1 if the player is not in the game)
+	 */
+	int playerIndex(Player player) {
+		Integer p = player_index.get(player);
+		return p == null ? -1 : p;
+	}
+
+	/**
+	 * Changes the owner of a territory, moving it and its dice from the
+	 * previous owner's indexes to the new owner's. Territory.setOwner() ends up
+	 * here.
+	 * 
+	 * @param id territory ID#
+	 * @param owner new owner (null for none)
+	 */
+	void setOwner(int id, Player owner) {
+		int to = playerIndex(owner);
+		if (owner != null && to < 0)
+			throw new IllegalArgumentException("player is not in this game");
+		setOwnerIndex(id, to);
+	}
+
+	/**
+	 * index based body of setOwner()
+	 * 
+	 * @param id territory ID#
+	 * @param to new owner's player index (-1 for none)
+	 */
+	private void setOwnerIndex(int id, int to) {
+		int from = owners[id] - 1;
+		if (from == to) return;
+		if (journaling) log(id);
+		owners[id] = (byte) (to + 1);
+		
+		//take the territory away from the previous owner
+		if (from >= 0) {
+			int[] row = holdings[from];
+			int count = --holding_count[from],
+					slot = Arrays.binarySearch(row, 0, count + 1, id);
+			System.arraycopy(row, slot + 1, row, slot, count - slot);
+			holdings[from] = shrink(row, count);
+			dice_count[from] -= dice[id];
+		}
+		
+		//give it to the new one, keeping the row in ID# order
+		if (to >= 0) {
+			int count = holding_count[to]++;
+			int[] row = holdings[to] = grow(holdings[to], count);
+			int slot = count == 0 || row[count - 1] < id ? count
+					: -Arrays.binarySearch(row, 0, count, id) - 1;
+			System.arraycopy(row, slot, row, slot + 1, count - slot);
+			row[slot] = id;
+			dice_count[to] += dice[id];
+		}
+		
+		//merge or split the affected clusters
+		if (clusters != null) clusters.setOwner(id, to);
+		
+		//update the borders around the territory
+		if (neighbor_graph != null) {
+			int enemies = 0;
+			for (int step = 0; step < neighbor_graph.degree(id); step++) {
+				int next = neighbor_graph.neighbor(id, step), owner = owners[next] - 1;
+				if (owner != to) enemies++;
+				if ((owner != from) != (owner != to)) {
+					enemy_count[next] += owner != to ? 1 : -1;
+					updateBorder(next, owner);
+				}
+			}
+			enemy_count[id] = enemies;
+			if (border_slot[id] >= 0) removeBorder(id, from);
+			updateBorder(id, to);
+		}
+		
+		//move the territory to its new owner's open list
+		if (open_slot[id] >= 0) removeOpen(id, from);
+		updateOpen(id, to);
+	}
+
+	/**
+	 * makes room for one more entry in a per player row, doubling it when it
+	 * is full
+	 * 
+	 * @param row per player row
+	 * @param count entries in use
+	 * @return the row, or a larger copy
+	 */
+	private static int[] grow(int[] row, int count) {
+		return count < row.length ? row : Arrays.copyOf(row, row.length * 2);
+	}
+
+	/**
+	 * halves a per player row once it is less than a quarter full, so the
+	 * rows of all the players together stay about the size of the board
+	 * 
+	 * @param row per player row
+	 * @param count entries in use
+	 * @return the row, or a smaller copy
+	 */
+	private static int[] shrink(int[] row, int count) {
+		return count >= row.length / 4 || row.length <= ROW ? row
+				: Arrays.copyOf(row, row.length / 2);
+	}
+
+	/**
+	 * adds a territory to or takes it off its owner's border to match its
+	 * enemy count
+	 * 
+	 * @param id territory ID#
+	 * @param p owner's player index (-1 for none)
+	 */
+	private void updateBorder(int id, int p) {
+		boolean on = p >= 0 && enemy_count[id] > 0;
+		if (on == border_slot[id] >= 0) return;
+		if (on) {
+			int[] row = border[p] = grow(border[p], border_count[p]);
+			border_slot[id] = border_count[p];
+			row[border_count[p]++] = id;
+		}
+		else removeBorder(id, p);
+	}
+
+	/**
+	 * takes a territory off a player's border
+	 * 
+	 * @param id territory ID#
+	 * @param p player index the territory was on the border of
+	 */
+	private void removeBorder(int id, int p) {
+		int last = border[p][--border_count[p]];
+		border[p][border_slot[id]] = last;
+		border_slot[last] = border_slot[id];
+		border_slot[id] = -1;
+		border[p] = shrink(border[p], border_count[p]);
+	}
+
+	/**
+	 * adds a territory to or takes it off its owner's open list to match its
+	 * dice
+	 * 
+	 * @param id territory ID#
+	 * @param p owner's player index (-1 for none)
+	 */
+	private void updateOpen(int id, int p) {
+		boolean on = p >= 0 && dice[id] < MAXDICE;
+		if (on == open_slot[id] >= 0) return;
+		if (on) {
+			int[] row = open[p] = grow(open[p], open_count[p]);
+			open_slot[id] = open_count[p];
+			row[open_count[p]++] = id;
+		}
+		else removeOpen(id, p);
+	}
+
+	/**
+	 * takes a territory off a player's open list
+	 * 
+	 * @param id territory ID#
+	 * @param p player index the territory was open for
+	 */
+	private void removeOpen(int id, int p) {
+		int last = open[p][--open_count[p]];
+		open[p][open_slot[id]] = last;
+		open_slot[last] = open_slot[id];
+		open_slot[id] = -1;
+		open[p] = shrink(open[p], open_count[p]);
+	}
+
+	/**
+	 * Changes the number of dice on a territory, keeping its owner's total
+	 * current. Territory.setDice() ends up here.
+	 * 
+	 * @param id territory ID#
+	 * @param d new number of dice
+	 * @throws IllegalArgumentException if d is not between 0 and MAXDICE
+	 */
+	void setDice(int id, int d) {
+		if (d < 0 || d > MAXDICE)
+			throw new IllegalArgumentException("territory " + id + " cannot hold "
+					+ d + " dice (0 to " + MAXDICE + ")");
+		if (journaling && dice[id] != d) log(id);
+		int p = owners[id] - 1;
+		if (p >= 0) dice_count[p] += d - dice[id];
+		dice[id] = (byte) d;
+		updateOpen(id, p);
+	}
+
 	/**
      * Each territory has at least one adjacent (edge-sharing) neighboring
-     * territory, but no more than four. This method returns a reference to an
+     * territory, but no more than four (on the default square grid; the
+     * board's topology sets the limit). This method returns a reference to an
      * ArrayList of references to the given territorys neighbors. The Graph object
      * offers a helpful method: isInGraph(). isInGraph() takes a territory ID# and
      * returns true if the territory is participating in the game (remember, some
@@ -179,8 +931,9 @@ public class Map {
 		ArrayList<Territory> return_list = new ArrayList<Territory>();
 		
 		//convert list to array list
-		for (Integer i:neighbor_graph.getAdjacent(cell.getIdNum()))
-			return_list.add(getTerritory(i));
+		int id = cell.getIdNum();
+		for (int step = 0; step < neighbor_graph.degree(id); step++)
+			return_list.add(getTerritory(neighbor_graph.neighbor(id, step)));
 
 		//return final array list
 		return return_list;
@@ -194,18 +947,70 @@ public class Map {
 	 * @return list of indices for adjacent territories controlled by other players
 	 */
 	public ArrayList<Territory> getEnemyNeighbors(Territory cell) {
+		long start = Metrics.start();
 		ArrayList<Territory> return_list = new ArrayList<Territory>();
 		
 		//test ownership of territories before adding to the list
-		for (Integer i:neighbor_graph.getAdjacent(cell.getIdNum())) {
-			Territory t = getTerritory(i);
+		int id = cell.getIdNum();
+		for (int step = 0; step < neighbor_graph.degree(id); step++) {
+			Territory t = getTerritory(neighbor_graph.neighbor(id, step));
 			if (t.getOwner()!=cell.getOwner()) return_list.add(t);
 		}
 		
 		//final list
+		Metrics.GET_ENEMY_NEIGHBORS.stop(start);
 		return return_list;
 	}
 
+	/**
+	 * Allocation free version of getNeighbors(): copies the neighbors into a
+	 * buffer supplied (and reused) by the caller.
+	 * 
+	 * @param cell test cell
+	 * @param out buffer with room for getGraph().getMaxDegree() territories
+	 * @return number of neighbors written to the buffer
+	 */
+	public int getNeighbors(Territory cell, Territory[] out) {
+		int id = cell.getIdNum(), degree = neighbor_graph.degree(id);
+		for (int step = 0; step < degree; step++)
+			out[step] = getTerritory(neighbor_graph.neighbor(id, step));
+		return degree;
+	}
+
+	/**
+	 * Allocation free version of getEnemyNeighbors(): copies the neighbors
+	 * controlled by another player into a buffer supplied by the caller.
+	 * 
+	 * @param cell test cell
+	 * @param out buffer with room for getGraph().getMaxDegree() territories
+	 * @return number of enemy neighbors written to the buffer
+	 */
+	public int getEnemyNeighbors(Territory cell, Territory[] out) {
+		int id = cell.getIdNum(), count = 0;
+		for (int step = 0; step < neighbor_graph.degree(id); step++) {
+			int next = neighbor_graph.neighbor(id, step);
+			if (owners[next] != owners[id]) out[count++] = getTerritory(next);
+		}
+		return count;
+	}
+
+	/**
+	 * ID# based version of getEnemyNeighbors() for callers that work with
+	 * territory numbers instead of objects.
+	 * 
+	 * @param id test cell ID#
+	 * @param out buffer with room for getGraph().getMaxDegree() ID#s
+	 * @return number of enemy neighbor ID#s written to the buffer
+	 */
+	public int getEnemyNeighbors(int id, int[] out) {
+		int count = 0;
+		for (int step = 0; step < neighbor_graph.degree(id); step++) {
+			int next = neighbor_graph.neighbor(id, step);
+			if (owners[next] != owners[id]) out[count++] = next;
+		}
+		return count;
+	}
+
 	/**
      * This method is called by the constructor after the array of un-owned
      * territories has been built. This method assigns to each player the same
@@ -218,24 +1023,30 @@ public class Map {
 	    //get number fo players for use with modulo
 	    int number_of_players = players.size();
 		
-	    //make sure all occupied territories are assigned
-		for (int step = 0; step < OCCUPIED;step++) {
+	    //collect the active territories
+	    int[] open = new int[NUMTERRITORIES];
+	    int available = 0;
+	    for (int index = 0; index < NUMTERRITORIES; index++)
+	        if (neighbor_graph.isInGraph(index)) open[available++] = index;
+		
+	    //deal the occupied territories out in a random order
+		int[] dealt = new int[NUMTERRITORIES];
+		for (int step = 0; step < available;step++) {
 			
-		    //get random territory
-		    int index = RNG.nextInt(NUMTERRITORIES);
-            Territory t = getTerritory(index);
-            
-            //get next available territory if random number is either unused
-            //or occupied 
-            while (!neighbor_graph.isInGraph(index) || t.getOwner() != null) {
-				index++;
-				if (index == NUMTERRITORIES) index = 0;
-				t = getTerritory(index);
-			}
-            
-            //set owner and one die
-			t.setOwner(players.get(step%number_of_players));
-			t.setDice(1);
+		    //swap a random territory from the remaining ones into place
+		    int pick = step + RNG.nextInt(available - step);
+		    int index = open[pick];
+		    open[pick] = open[step];
+		    open[step] = index;
+		    dealt[index] = step % number_of_players + 1;
+		}
+		
+		//set owner and one die in ID# order, so each player's property is
+		//built without shifting
+		for (int index = 0; index < NUMTERRITORIES; index++) {
+			if (dealt[index] == 0) continue;
+			setOwnerIndex(index, dealt[index] - 1);
+			setDice(index, 1);
 		}
 	}
 
@@ -252,40 +1063,25 @@ public class Map {
 	private void distributeDice() {
 		
 	    //assign dice for each player
-	    for (Player p:players) {
+	    for (int p = 0; p < roster.length; p++) {
 			
-	        //get list of properties and calculate the number of dice to add
-	        ArrayList<Territory> properties = getPropertyOf(p);
-			int number_to_add = properties.size() * 2;
+	        //calculate the number of dice to add
+	        int number_to_add = holding_count[p] * 2;
 			
-			//loop for adding dice
-			for (int step = 0; step < number_to_add; step++) {
-				Territory t;
-				
-				//prevent adding dice to full spaces
-				do t = properties.get(RNG.nextInt(properties.size()));
-				while (t.getDice() >= MAXDICE);
-				
-				//add to random territory
-				t.setDice(t.getDice()+1);
+			//add each die to a random territory with room, picked from the
+			//open list so full spaces are never drawn (stops early if every
+			//territory fills up)
+			for (int step = 0; step < number_to_add && open_count[p] > 0; step++) {
+				int id = open[p][RNG.nextInt(open_count[p])];
+				setDice(id, dice[id]+1);
 			}
 		}
 	}
 
 	/**
-	 * used to keep track of visited cells in recursion
+	 * used to keep track of active cells while building the graph
 	 */
 	private boolean[] marked;
-	
-	/**
-	 * used to count the number of properties in recursion
-	 */
-	private int count;
-	
-	/**
-	 * list of player's territories 
-	 */
-	private ArrayList<Territory> properties;
 
 	/**
      * Returns a count of the number of territories in the largest connected cluster
@@ -295,66 +1091,21 @@ public class Map {
 	 * @return size of largest block of connected territories
 	 */
 	public int countConnected (Player player) {
-		
-	    //get player's properties
-	    properties = getPropertyOf(player);
-		
-	    //keeps track of current longest chain
-	    int highest = 0;
-		
-	    //keeps track of visited territories
-	    marked = new boolean[properties.size()];
-		
-	    //go through each property
-	    for (Territory t:properties) {
-			count = 0;
-			
-			//recursive step
-			countConnected(t);
-			
-			//count found with recursion tested against current highest
-			highest = Math.max(highest, count);
-		}
-	    
-	    //return the count of the biggest chain
-		return highest;
-	}
-
-	/**
-	 * recursive step for traversing properties
-	 * 
-	 * @param t starting territory
-	 */
-	private void countConnected(Territory t) {
-		
-	    //get index for boolean array
-	    int property_index = properties.indexOf(t);
-		
-	    //prevent adding previously visited territories to traversal
-	    if (!marked[property_index]) {
-			
-	        //mark newly found territories
-	        marked[property_index] = true;
-			count++;
-			List<Integer> connected_list = neighbor_graph.getAdjacent(t.getIdNum());
-			
-			//test all connected edges
-			for (Integer i:connected_list) {
-				Territory connected_territory = getTerritory(i);
-				
-				//attempt to add all edges owned by the same player
-				if (connected_territory.getOwner()==t.getOwner())
-					countConnected(connected_territory);
-			}
-		}
+		long start = Metrics.start();
+		int p = playerIndex(player);
+		int largest = p < 0 ? 0 : clusters.largest(p);
+		Metrics.COUNT_CONNECTED.stop(start);
+		return largest;
 	}
 
 	/**
      * Builds and returns a reference to a graph representing all of the active
      * territories in the game. An acceptable graph has the appropriate number
-     * of active territories (Map.OCCUPIED), scatters the inactive territories
+     * of active territories (Map.OCCUPIED), scatters the inactive territories
      * among the active territories in an unpredictable (pseudo-random) fashion,
      * and ensures that all of the active vertices are connected.
+	 * The board's generator decides how the unused territories are chosen.
+	 * A size other than the board's own gets a square grid.
 	 * 
 	 * @param rows number of rows
 	 * @param cols number of columns
@@ -362,37 +1113,69 @@ public class Map {
 	 * @return
 	 */
 	public Graph constructGraph(int rows, int cols, int victims) {
+		return constructGraph(rows == ROWS && cols == COLUMNS ? topology
+				: GridTopology.square(rows, cols), victims);
+	}
+
+	/**
+	 * Builds a connected graph of the given shape with the given number of
+	 * unused cells, using the board's generator.
+	 * 
+	 * @param shape board shape
+	 * @param victims number of unused territories
+	 * @return connected graph
+	 * @throws IllegalArgumentException if victims is negative or leaves fewer
+	 * than two territories
+	 */
+	public Graph constructGraph(Topology shape, int victims) {
+		if (victims < 0 || victims > shape.size() - 2)
+			throw new IllegalArgumentException("victims must leave at least two territories");
+		return generator == Generator.FAST ? pruneSpanningTree(shape, victims)
+				: carveGraph(shape, victims);
+	}
+
+	/**
+	 * Legacy generator: removes random cells one at a time, skipping any
+	 * whose removal would disconnect the board.
+	 * 
+	 * @param shape board shape
+	 * @param victims number of unused territories
+	 * @return connected graph
+	 */
+	private Graph carveGraph(Topology shape, int victims) {
 		
 	    //total number of territories
-	    int total = rows * cols;
+	    int total = shape.size();
 		
 	    //new graph for return
-	    Graph g = new Graph(total);
+	    Graph g = new Graph(total, shape.getMaxDegree());
+	    
+	    //neighbors of every cell (shared by boards of this shape)
+	    int[] grid = shape.getNeighbors();
 		
-	    //test for active territories
-	    marked = new boolean[total];
+	    //test for active territories (reused by the next board of this size)
+	    if (marked == null || marked.length != total) marked = new boolean[total];
+	    else Arrays.fill(marked, false);
 
 	    //activate all cells by default
 		for (int step = 0; step < total; step++)
-			activateTerritory(step, g, rows, cols);
+			activateTerritory(step, g, shape);
+		
+		//tracks which cells can go without disrupting board connectivity
+		ArticulationIndex cuts = new ArticulationIndex(g);
 		
 		//remove cells
 		for (int step = 0; step < victims; step++) {
 			int test_move;
-			do {
-				//random vertex to remove tested against tracking boolean array
-			    do test_move = RNG.nextInt(total);
-				while (!marked[test_move]);
-				
-			    //removes the vertex
-			    g.removeVertex(test_move);
-				marked[test_move] = false;
-				
-				//reactivates if removal disrupts board connectivity
-				if (!g.connected())
-					activateTerritory(test_move, g, rows, cols);
-			//keep removing cells until count is fulfilled
-			} while (marked[test_move]);
+			
+			//random vertex to remove tested against tracking boolean array
+			//and the articulation point index
+			do test_move = RNG.nextInt(total);
+			while (!marked[test_move] || !cuts.isSafeToRemove(test_move));
+			
+			//removes the vertex
+			g.removeVertex(test_move);
+			marked[test_move] = false;
 		}
 		
 		//reset tracking array
@@ -401,24 +1184,20 @@ public class Map {
 
 		//add back a number of territories to compensate for the ones removed
 		//tangentially from random removal (all neighbors eliminated)
-		while (VICTIMS < g.getUnusedVertices().size()) {
+		while (victims < total - g.getActiveVertices()) {
 		    int index = 0;
 		    
 		    //step through graph until an index is found that is active and has
 		    //less than the number of possible edges
-		    while (!g.isInGraph(index) ||
-		            g.degree(index) == validMoves(index, cols, rows).size())
+		    while (!g.isInGraph(index) || g.degree(index) == shape.degree(index))
 		        index++;
 		    
-		    //get list of valid edges
-		    ArrayList<Integer> possible_adds = validMoves(index, cols, rows);
-		    index = 0;
-		    
-		    //step through list until unused vertex is found
-		    while (g.isInGraph(possible_adds.get(index))) index++;
+		    //step through its neighbors until an unused vertex is found
+		    int slot = index * shape.getMaxDegree();
+		    while (grid[slot] < 0 || g.isInGraph(grid[slot])) slot++;
 		    
 		    //reactivate it
-		    activateTerritory(possible_adds.get(index), g, rows, cols);
+		    activateTerritory(grid[slot], g, shape);
 		}
 
 		//return completed graph
@@ -426,59 +1205,122 @@ public class Map {
 	}
 
 	/**
-	 * Activates a cell by connecting it to all currently active edges
+	 * Fast generator: joins the board with a random spanning tree (Kruskal's
+	 * algorithm over the edges in shuffled order, with a union by rank
+	 * disjoint set), then removes random leaves of the tree. Removing a leaf
+	 * never disconnects what is left, and a neighbor left with one tree edge
+	 * becomes a leaf in turn, so exactly the requested number of cells are
+	 * removed in one pass. The remaining cells are then joined by every edge
+	 * between them.
 	 * 
-	 * @param index vertex to activate
-	 * @param g graph to modify
-	 * @param rows total rows
-	 * @param cols total columns
+	 * @param shape board shape
+	 * @param victims number of unused territories
+	 * @return connected graph
 	 */
-	private void activateTerritory(int index, Graph g, int rows, int cols) {
+	private Graph pruneSpanningTree(Topology shape, int victims) {
+		int total = shape.size(), stride = shape.getMaxDegree();
+		int[] grid = shape.getNeighbors();
 		
-	    //mark as active
-	    marked[index] = true;
+		//list every edge once, from the lower numbered cell, by its slot in
+		//the neighbor table (last slot first, which on a square grid is right
+		//and then down), and shuffle them
+		int count = 0;
+		for (int slot = 0; slot < grid.length; slot++)
+			if (grid[slot] > slot / stride) count++;
+		int[] edges = new int[Math.max(count, total)];
+		count = 0;
+		for (int cell = 0; cell < total; cell++)
+			for (int slot = (cell + 1) * stride - 1; slot >= cell * stride; slot--)
+				if (grid[slot] > cell) edges[count++] = slot;
+		for (int step = count - 1; step > 0; step--) {
+			int other = RNG.nextInt(step + 1), swap = edges[step];
+			edges[step] = edges[other];
+			edges[other] = swap;
+		}
 		
-	    //get valid moves
-	    ArrayList<Integer> connected = validMoves(index, cols, rows);
+		//keep each edge that joins two separate trees (the tree neighbors of
+		//each cell are kept XORed together: a leaf's only neighbor is the XOR)
+		int[] parent = new int[total], rank = new int[total],
+				degree = new int[total], link = new int[total];
+		for (int cell = 0; cell < total; cell++) parent[cell] = cell;
+		for (int step = 0; step < count; step++) {
+			int a = edges[step] / stride, b = grid[edges[step]];
+			int root_a = find(parent, a), root_b = find(parent, b);
+			if (root_a == root_b) continue;
+			if (rank[root_a] > rank[root_b]) parent[root_b] = root_a;
+			else {
+				parent[root_a] = root_b;
+				if (rank[root_a] == rank[root_b]) rank[root_b]++;
+			}
+			degree[a]++;
+			degree[b]++;
+			link[a] ^= b;
+			link[b] ^= a;
+		}
 		
-	    //add edges for all valid and active vertices
-		for (Integer move:connected)
-			if (marked[move])
-				g.addEdge(index, move);
+		//remove random leaves, promoting neighbors that become leaves
+		int[] leaves = edges;
+		int leaf_count = 0;
+		for (int cell = 0; cell < total; cell++)
+			if (degree[cell] <= 1) leaves[leaf_count++] = cell;
+		boolean[] removed = new boolean[total];
+		for (int step = 0; step < victims; step++) {
+			int pick = RNG.nextInt(leaf_count), leaf = leaves[pick];
+			leaves[pick] = leaves[--leaf_count];
+			removed[leaf] = true;
+			if (degree[leaf] == 1) {
+				int next = link[leaf];
+				link[next] ^= leaf;
+				if (--degree[next] == 1) leaves[leaf_count++] = next;
+			}
+		}
+		
+		//connect the remaining cells to their remaining neighbors (in the
+		//same order the edges were listed)
+		Graph g = new Graph(total, stride);
+		for (int cell = 0; cell < total; cell++) {
+			if (removed[cell]) continue;
+			for (int slot = (cell + 1) * stride - 1; slot >= cell * stride; slot--)
+				if (grid[slot] > cell && !removed[grid[slot]])
+					g.addEdge(cell, grid[slot]);
+		}
+		return g;
 	}
 
 	/**
-	 * Generate a list of territories directly north, south, east or west.
-	 * (constrained by number of rows and columns to create a square)
+	 * finds the root of a cell's tree while building the spanning tree,
+	 * halving the path on the way
 	 * 
-	 * @param index test vertex
-	 * @param cols number of columns
-	 * @param rows number of rows
-	 * @return list of all valid moves 
+	 * @param parent parent links
+	 * @param cell test cell
+	 * @return root of its tree
 	 */
-	private ArrayList<Integer> validMoves(int index, int cols, int rows) {
-		ArrayList<Integer> moves = new ArrayList<>();
-
-		//up
-		int cursor = index - cols;
-		if (cursor > -1)
-			moves.add(cursor);
-
-		//down
-		cursor = index + cols;
-		if (cursor < rows * cols)
-			moves.add(cursor);
-
-		//left
-		cursor = index + 1;
-		if (cursor%cols > 0)
-			moves.add(cursor);
-
-		//right
-		if (index%cols > 0)
-			moves.add(index-1);
+	private static int find(int[] parent, int cell) {
+		while (parent[cell] != cell) {
+			parent[cell] = parent[parent[cell]];
+			cell = parent[cell];
+		}
+		return cell;
+	}
 
-		return moves;
+	/**
+	 * Activates a cell by connecting it to all currently active edges
+	 * 
+	 * @param index vertex to activate
+	 * @param g graph to modify
+	 * @param shape board shape
+	 */
+	private void activateTerritory(int index, Graph g, Topology shape) {
+		
+	    //mark as active
+	    marked[index] = true;
+		
+	    //add edges for all valid and active neighboring vertices
+	    int[] grid = shape.getNeighbors();
+	    int base = index * shape.getMaxDegree();
+		for (int slot = base; slot < base + shape.getMaxDegree(); slot++)
+			if (grid[slot] >= 0 && marked[grid[slot]])
+				g.addEdge(index, grid[slot]);
 	}
 
 }
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Factory for reproducible Bones Battle maps. Every board is generated from
+ * an explicit seed, so the same builder settings and seed always give the
+ * same board. Many boards can be generated at once across all cores.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class MapBuilder {
+
+    /**
+     * mixing constant used to spread board indices across seeds
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * list of players sharing every board
+     */
+    private final ArrayList<Player> players;
+
+    /**
+     * board settings (defaults match the Bones game)
+     */
+    private int rows = 5, columns = 8, victims = 10, maxDice = 8;
+
+    /**
+     * master seed
+     */
+    private long seed;
+
+    /**
+     * how the unused spaces are chosen
+     */
+    private Map.Generator generator = Map.Generator.LEGACY;
+
+    /**
+     * shape of the boards (null for a square grid of rows by columns)
+     */
+    private Topology topology;
+
+    /**
+     * constructor
+     *
+     * @param players list of players
+     */
+    public MapBuilder (ArrayList<Player> players) {
+        this.players = players;
+    }
+
+    /**
+     * set number of rows
+     *
+     * @param r number of rows
+     * @return this builder
+     */
+    public MapBuilder rows (int r) {rows = r; return this;}
+
+    /**
+     * set number of columns
+     *
+     * @param c number of columns
+     * @return this builder
+     */
+    public MapBuilder columns (int c) {columns = c; return this;}
+
+    /**
+     * set number of unused spaces
+     *
+     * @param v number of unused spaces
+     * @return this builder
+     */
+    public MapBuilder victims (int v) {victims = v; return this;}
+
+    /**
+     * set max number of dice per territory
+     *
+     * @param d max number of dice per territory
+     * @return this builder
+     */
+    public MapBuilder maxDice (int d) {maxDice = d; return this;}
+
+    /**
+     * set master seed
+     *
+     * @param s master seed
+     * @return this builder
+     */
+    public MapBuilder seed (long s) {seed = s; return this;}
+
+    /**
+     * set how the unused spaces are chosen
+     *
+     * @param mode board generator
+     * @return this builder
+     */
+    public MapBuilder generator (Map.Generator mode) {generator = mode; return this;}
+
+    /**
+     * set shape of the boards (overrides rows and columns; null goes back to
+     * a square grid)
+     *
+     * @param shape board shape
+     * @return this builder
+     */
+    public MapBuilder topology (Topology shape) {topology = shape; return this;}
+
+    /**
+     * Builds a single board from the master seed.
+     *
+     * @return new board
+     */
+    public Map build () {
+        return build(new SplittableRandom(seed));
+    }
+
+    /**
+     * Builds a single board from the given generator.
+     *
+     * @param rng source of randomness for board generation
+     * @return new board
+     */
+    public Map build (RandomGenerator rng) {
+        return new Map(players, shape(), victims, maxDice, rng, generator);
+    }
+
+    /**
+     * Derives the seed of one board in a batch from the master seed. Each
+     * board's seed depends only on its index, so results do not depend on
+     * how the batch is spread across threads.
+     *
+     * @param index position of the board in the batch
+     * @return seed for that board
+     */
+    public long seedFor (int index) {
+        return new SplittableRandom(seed + GOLDEN_GAMMA * (index + 1)).nextLong();
+    }
+
+    /**
+     * Fills the array with boards generated in parallel. Boards already in the
+     * array with matching dimensions are regenerated in place; empty or
+     * mismatched slots get a new board.
+     *
+     * @param boards storage for the boards (its length is the batch size)
+     * @return the same array
+     */
+    public Map[] buildAll (Map[] boards) {
+        IntStream.range(0, boards.length).parallel().forEach(index -> {
+            SplittableRandom rng = new SplittableRandom(seedFor(index));
+            Map board = boards[index];
+            if (board != null && board.getTopology() == shape()
+                    && board.VICTIMS == victims && board.MAXDICE == maxDice) {
+                board.setGenerator(generator);
+                board.generate(rng);
+            }
+            else
+                boards[index] = build(rng);
+        });
+        return boards;
+    }
+
+    /**
+     * shape of the boards being built
+     *
+     * @return board shape
+     */
+    private Topology shape () {
+        return topology != null ? topology : GridTopology.square(rows, columns);
+    }
+
+}
@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * Opt in call counts and latency histograms for the hot paths of the game.
+ * Run with -Dbones.metrics=true to turn them on. The switch is read once
+ * into a static final field, so when it is off the JIT drops the probes
+ * and they cost nothing; they stay compiled in.
+ *
+ * Each probe keeps one recorder per thread, so recording never locks or
+ * contends: a recorder is a plain count, total and log linear histogram
+ * (like HdrHistogram: 16 buckets per power of two, so any latency is kept
+ * to within about 6%). snapshot() adds up the recorders of every thread;
+ * counts still being recorded by other threads may be slightly behind.
+ * Recorders of threads that have ended are folded into one retired total
+ * whenever a thread starts recording and at every snapshot, so short lived
+ * threads (guards, search workers) do not pile up recorders.
+ * reset() works by remembering the totals at the time of the reset, so it
+ * never touches another thread's recorder either.
+ *
+ * Snapshots can be printed as JSON (toJson()) and, while a flight recording
+ * is running, each probe is also written to it once a second as a
+ * bones.Probe event.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class Metrics {
+
+    /**
+     * true if the probes are recording
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("bones.metrics");
+
+    /**
+     * log2 of the buckets per power of two
+     */
+    private static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+
+    /**
+     * number of buckets (enough for any positive long)
+     */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    /**
+     * every probe, in the order they were created
+     */
+    private static final List<Probe> PROBES = new CopyOnWriteArrayList<>();
+
+    /**
+     * every probe by name
+     */
+    private static final ConcurrentHashMap<String, Probe> NAMES = new ConcurrentHashMap<>();
+
+    /**
+     * Strategy.willAttack() (timed by Simulator.playTurn)
+     */
+    public static final Probe WILL_ATTACK = probe("Strategy.willAttack");
+
+    /**
+     * Map.getPropertyOf()
+     */
+    public static final Probe GET_PROPERTY_OF = probe("Map.getPropertyOf");
+
+    /**
+     * Map.getEnemyNeighbors()
+     */
+    public static final Probe GET_ENEMY_NEIGHBORS = probe("Map.getEnemyNeighbors");
+
+    /**
+     * Map.countConnected()
+     */
+    public static final Probe COUNT_CONNECTED = probe("Map.countConnected");
+
+    /**
+     * Graph.connected()
+     */
+    public static final Probe CONNECTED = probe("Graph.connected");
+
+    static {
+        if (ENABLED) FlightRecorder.addPeriodicEvent(ProbeEvent.class, Metrics::emit);
+    }
+
+    /**
+     * not instantiable
+     */
+    private Metrics () {}
+
+    /**
+     * Gets the probe with a name, creating it the first time.
+     *
+     * @param name name of the call
+     * @return probe shared by every caller using the name
+     */
+    public static Probe probe (String name) {
+        return NAMES.computeIfAbsent(name, Probe::new);
+    }
+
+    /**
+     * Starts timing a call.
+     *
+     * @return start time to pass to Probe.stop() (0 when disabled)
+     */
+    public static long start () {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds up every probe.
+     *
+     * @return one histogram per probe
+     */
+    public static List<Histogram> snapshot () {
+        ArrayList<Histogram> list = new ArrayList<>(PROBES.size());
+        for (Probe probe: PROBES) list.add(probe.snapshot());
+        return list;
+    }
+
+    /**
+     * starts every probe counting again from zero
+     */
+    public static void reset () {
+        for (Probe probe: PROBES) probe.reset();
+    }
+
+    /**
+     * Writes a snapshot of every probe as JSON: an object with one member
+     * per probe, giving its count and its mean, percentile and max latencies
+     * in nanoseconds.
+     *
+     * @return JSON text
+     */
+    public static String toJson () {
+        StringBuilder out = new StringBuilder("{");
+        for (Histogram h: snapshot()) {
+            if (out.length() > 1) out.append(',');
+            out.append(String.format("%n  \"%s\": {\"count\": %d, \"mean\": %.1f, "
+                    + "\"p50\": %d, \"p90\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}",
+                    h.getName(), h.getCount(), h.getMean(), h.getPercentile(50),
+                    h.getPercentile(90), h.getPercentile(99), h.getPercentile(99.9),
+                    h.getMax()));
+        }
+        return out.append(String.format("%n}")).toString();
+    }
+
+    /**
+     * writes every probe to the flight recording
+     */
+    private static void emit () {
+        for (Histogram h: snapshot()) {
+            ProbeEvent event = new ProbeEvent();
+            event.probe = h.getName();
+            event.count = h.getCount();
+            event.mean = (long) h.getMean();
+            event.p99 = h.getPercentile(99);
+            event.max = h.getMax();
+            event.commit();
+        }
+    }
+
+    /**
+     * finds the bucket of a latency
+     *
+     * @param nanos latency
+     * @return bucket index
+     */
+    private static int bucket (long nanos) {
+        if (nanos < SUB) return (int) Math.max(nanos, 0);
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return shift * SUB + (int) (nanos >>> shift);
+    }
+
+    /**
+     * finds the highest latency a bucket holds
+     *
+     * @param bucket bucket index
+     * @return highest latency in the bucket
+     */
+    private static long highest (int bucket) {
+        if (bucket < 2 * SUB) return bucket;
+        int shift = bucket / SUB - 1;
+        return ((long) (bucket % SUB + SUB + 1) << shift) - 1;
+    }
+
+    /**
+     * One instrumented call site.
+     */
+    public static final class Probe {
+
+        /**
+         * name of the call
+         */
+        private final String name;
+
+        /**
+         * recorders of the threads that have recorded and not yet been
+         * retired (guarded by this probe)
+         */
+        private final List<Recorder> recorders = new ArrayList<>();
+
+        /**
+         * sum of the recorders of threads that have ended
+         */
+        private final long[] retired = new long[2 + BUCKETS];
+
+        /**
+         * each thread's recorder: count, total nanoseconds, then the buckets
+         */
+        private final ThreadLocal<long[]> local = ThreadLocal.withInitial(this::register);
+
+        /**
+         * totals at the last reset
+         */
+        private long[] baseline = new long[2 + BUCKETS];
+
+        /**
+         * constructor
+         *
+         * @param name name of the call
+         */
+        private Probe (String name) {
+            this.name = name;
+            PROBES.add(this);
+        }
+
+        /**
+         * Records a call.
+         *
+         * @param start value returned by Metrics.start()
+         */
+        public void stop (long start) {
+            if (ENABLED) record(System.nanoTime() - start);
+        }
+
+        /**
+         * Records a call timed by the caller. Unlike stop() this records
+         * even when metrics are off: it is only called by code that reports
+         * its own latencies (GuardedStrategy.report()), has already read
+         * the clock, and calls it at most once per decision.
+         *
+         * @param nanos latency of the call
+         */
+        public void record (long nanos) {
+            long[] recorder = local.get();
+            recorder[0]++;
+            recorder[1] += nanos;
+            recorder[2 + bucket(nanos)]++;
+        }
+
+        /**
+         * get name of the call
+         *
+         * @return name of the call
+         */
+        public String getName () {return name;}
+
+        /**
+         * gives the calling thread a recorder
+         *
+         * @return new recorder
+         */
+        private synchronized long[] register () {
+            retire();
+            Recorder recorder = new Recorder(Thread.currentThread());
+            recorders.add(recorder);
+            return recorder.counts;
+        }
+
+        /**
+         * Folds the recorders of threads that have ended into the retired
+         * total. A thread that has ended records nothing more, and seeing
+         * it end (isAlive()) makes all its counts visible.
+         */
+        private synchronized void retire () {
+            for (Iterator<Recorder> it = recorders.iterator(); it.hasNext();) {
+                Recorder recorder = it.next();
+                if (recorder.owner.isAlive()) continue;
+                for (int step = 0; step < retired.length; step++)
+                    retired[step] += recorder.counts[step];
+                it.remove();
+            }
+        }
+
+        /**
+         * adds up the recorders
+         *
+         * @return totals since the program started
+         */
+        private synchronized long[] totals () {
+            retire();
+            long[] sum = retired.clone();
+            for (Recorder recorder: recorders)
+                for (int step = 0; step < sum.length; step++) sum[step] += recorder.counts[step];
+            return sum;
+        }
+
+        /**
+         * number of recorders not yet retired
+         *
+         * @return live recorders
+         */
+        synchronized int countRecorders () {return recorders.size();}
+
+        /**
+         * Adds up the recorders since the last reset.
+         *
+         * @return histogram of the calls
+         */
+        public synchronized Histogram snapshot () {
+            long[] sum = totals();
+            for (int step = 0; step < sum.length; step++) sum[step] -= baseline[step];
+            return new Histogram(name, sum);
+        }
+
+        /**
+         * starts counting again from zero
+         */
+        public synchronized void reset () {
+            baseline = totals();
+        }
+    }
+
+    /**
+     * One thread's counts for one probe.
+     */
+    private static final class Recorder {
+
+        /**
+         * thread recording into the counts
+         */
+        final Thread owner;
+
+        /**
+         * count, total nanoseconds, then the buckets
+         */
+        final long[] counts = new long[2 + BUCKETS];
+
+        /**
+         * constructor
+         *
+         * @param owner thread recording into the counts
+         */
+        Recorder (Thread owner) {this.owner = owner;}
+    }
+
+    /**
+     * Latencies of one probe at one moment.
+     */
+    public static final class Histogram {
+
+        /**
+         * name of the call
+         */
+        private final String name;
+
+        /**
+         * count, total nanoseconds, then the buckets
+         */
+        private final long[] data;
+
+        /**
+         * constructor
+         *
+         * @param name name of the call
+         * @param data count, total nanoseconds, then the buckets
+         */
+        private Histogram (String name, long[] data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        /**
+         * get name of the call
+         *
+         * @return name of the call
+         */
+        public String getName () {return name;}
+
+        /**
+         * get number of calls
+         *
+         * @return number of calls
+         */
+        public long getCount () {return data[0];}
+
+        /**
+         * get mean latency
+         *
+         * @return mean latency in nanoseconds (0 if there were no calls)
+         */
+        public double getMean () {
+            return data[0] == 0 ? 0 : (double) data[1] / data[0];
+        }
+
+        /**
+         * Finds a percentile of the latencies.
+         *
+         * @param percent percentage of calls at or below the result (0 to 100)
+         * @return latency in nanoseconds, rounded up to its bucket (0 if there
+         * were no calls)
+         */
+        public long getPercentile (double percent) {
+            long rank = (long) Math.ceil(data[0] * percent / 100), seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += data[2 + bucket];
+                if (seen >= Math.max(rank, 1)) return highest(bucket);
+            }
+            return 0;
+        }
+
+        /**
+         * get highest latency
+         *
+         * @return highest latency in nanoseconds, rounded up to its bucket
+         */
+        public long getMax () {return getPercentile(100);}
+
+        @Override
+        public String toString () {
+            return String.format("%-24s %12d calls %10.1f ns mean %10d ns p99", name,
+                    getCount(), getMean(), getPercentile(99));
+        }
+    }
+
+    /**
+     * flight recorder event written once a second for each probe
+     */
+    @Name("bones.Probe")
+    @Label("Bones Probe")
+    @Category("Bones")
+    @Description("Calls and latencies of an instrumented call since the last reset")
+    @Period("1 s")
+    static class ProbeEvent extends Event {
+
+        @Label("Probe")
+        String probe;
+
+        @Label("Calls")
+        long count;
+
+        @Label("Mean")
+        @Timespan(Timespan.NANOSECONDS)
+        long mean;
+
+        @Label("99th Percentile")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+
+        @Label("Max")
+        @Timespan(Timespan.NANOSECONDS)
+        long max;
+    }
+
+}
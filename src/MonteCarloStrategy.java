@@ -0,0 +1,671 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monte Carlo Tree Search AI for Bones Battle
+ *
+ * Each decision is a choice between every legal attack and passing. Workers
+ * each grow their own search tree from the current position (root parallel
+ * search) until the per move time budget runs out, then the root visit
+ * counts are added up and the most visited choice is played. The first
+ * worker runs on the calling thread and the others on a pool shared by
+ * every instance, with at most one thread per core; its threads are daemons
+ * and stop after a second without work, so strategies never need to be
+ * shut down. An interrupted decision stops every worker, waits for them and
+ * passes. Attacks inside the tree are chance events: every branch keeps a
+ * child for a win and one for a loss, so after the real attack is resolved
+ * the matching subtree becomes the root for the next decision of the same
+ * turn.
+ *
+ * Playouts use a fast greedy policy for every player for a few rounds and
+ * score the position by the share of the board this player holds. Every
+ * worker searches its own copy of the board and rolls its changes back with
+ * the map's undo journal.
+ *
+ * Each game's search is seeded from the strategy's seed and the position of
+ * its first decision in that game, so a game does not depend on which games
+ * the same object played before (a Tournament worker plays many). A time
+ * budget makes the number of playouts depend on the machine; with a playout
+ * limit instead (setPlayoutLimit()) a seeded game plays out the same every
+ * time, on any number of threads.
+ *
+ * Like the other strategies it has a public no argument constructor so it
+ * can be loaded by class name. The thread count, budget, seed and playout
+ * limit default to the mcts.threads, mcts.budget (milliseconds), mcts.seed
+ * and mcts.playouts system properties.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class MonteCarloStrategy implements Strategy {
+
+    /**
+     * default time budget per decision in milliseconds
+     */
+    public static final int DEFAULT_BUDGET = 5;
+
+    /**
+     * UCB1 exploration constant (rewards are between 0 and 1)
+     */
+    private static final double EXPLORATION = 0.7;
+
+    /**
+     * deepest chain of attacks searched in the tree before a playout
+     */
+    private static final int MAX_DEPTH = 12;
+
+    /**
+     * rounds of greedy play in each playout
+     */
+    private static final int PLAYOUT_ROUNDS = 2;
+
+    /**
+     * attacks less likely than this to succeed are left out of the tree
+     */
+    private static final double LONG_SHOT = 0.1;
+
+    /**
+     * mixing constant used to spread positions across seeds
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * search threads shared by every instance
+     */
+    private static final ThreadPoolExecutor POOL = createPool();
+
+    /**
+     * Owner of the strategy
+     */
+    private Player p;
+
+    /**
+     * Attacking and defending territory (assigned when found)
+     */
+    private Territory attacker, defender;
+
+    /**
+     * number of search workers (the calling thread and threads - 1 from the
+     * shared pool)
+     */
+    private final int threads;
+
+    /**
+     * time budget per decision in nanoseconds
+     */
+    private final long budget;
+
+    /**
+     * search workers (created on the first decision)
+     */
+    private Worker[] workers;
+
+    /**
+     * board the workers were built for
+     */
+    private Map board;
+
+    /**
+     * root action chosen by the last decision (-1 after passing or a reset)
+     */
+    private int last_action = -1;
+
+    /**
+     * decisions made, playouts run and time spent deciding
+     */
+    private long decisions, playouts, nanos;
+
+    /**
+     * seed every game's search is derived from
+     */
+    private final long seed;
+
+    /**
+     * playouts each worker runs per decision (0 to search until the time
+     * budget runs out)
+     */
+    private int playout_limit;
+
+    /**
+     * set when the deciding thread is interrupted, so every worker stops
+     * after its current playout
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * default constructor (settings from system properties)
+     */
+    public MonteCarloStrategy () {
+        this(Integer.getInteger("mcts.threads",
+                Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("mcts.budget", DEFAULT_BUDGET),
+                Long.getLong("mcts.seed", 0));
+        setPlayoutLimit(Integer.getInteger("mcts.playouts", 0));
+    }
+
+    /**
+     * Parameterized constructor (seed 0)
+     *
+     * @param threads number of search threads
+     * @param budgetMillis time budget per decision in milliseconds
+     */
+    public MonteCarloStrategy (int threads, int budgetMillis) {
+        this(threads, budgetMillis, 0);
+    }
+
+    /**
+     * Parameterized constructor
+     *
+     * @param threads number of search threads
+     * @param budgetMillis time budget per decision in milliseconds
+     * @param seed seed every game's search is derived from
+     */
+    public MonteCarloStrategy (int threads, int budgetMillis, long seed) {
+        this.threads = Math.max(1, threads);
+        budget = budgetMillis * 1000000L;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs a fixed number of playouts on each worker for every decision
+     * instead of searching until the time budget runs out, so the search no
+     * longer depends on the speed of the machine.
+     *
+     * @param playouts playouts per worker per decision (0 to use the budget)
+     */
+    public void setPlayoutLimit (int playouts) {playout_limit = Math.max(0, playouts);}
+
+    @Override
+    /**
+     * Set owner
+     */
+    public void setPlayer (Player whom) {
+        p = whom;
+    }
+
+    @Override
+    /**
+     *Returns true if the player will attack, given the state of the game as
+     *described by the current game board. The search runs here and leaves
+     *its choice for getAttacker() and getDefender(); when there is no
+     *attack to make it passes at once without searching.
+     */
+    public boolean willAttack (Map board) {
+        long start = System.nanoTime();
+        prepare(board);
+
+        //passing is the only choice
+        Node root = workers[0].root;
+        if (root.from == null) workers[0].expand(root);
+        if (root.actions == 0) {
+            decisions++;
+            nanos += System.nanoTime() - start;
+            last_action = -1;
+            return false;
+        }
+
+        //search until the budget runs out, helped by the shared pool
+        long deadline = start + budget;
+        cancelled = false;
+        ArrayList<Future<Integer>> helpers = new ArrayList<>(threads - 1);
+        for (int step = 1; step < threads; step++) {
+            Worker w = workers[step];
+            helpers.add(POOL.submit(() -> w.search(deadline)));
+        }
+        playouts += workers[0].search(deadline);
+
+        //wait for every helper even when interrupted: one still running
+        //would go on changing its board and tree under the next decision
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        Throwable failure = null;
+        if (interrupted) cancelled = true;
+        for (Future<Integer> f: helpers)
+            while (true)
+                try {
+                    playouts += f.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = cancelled = true;
+                } catch (ExecutionException e) {
+                    cancelled = true;
+                    failure = e.getCause();
+                    break;
+                }
+        if (failure != null) throw new IllegalStateException(failure);
+
+        //an interrupted search passes, and the next decision starts over
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            decisions++;
+            nanos += System.nanoTime() - start;
+            last_action = -1;
+            return false;
+        }
+
+        //pick the root choice visited most across all workers
+        int best = root.actions, most = -1;
+        for (int action = 0; action <= root.actions; action++) {
+            int visits = 0;
+            for (Worker w: workers) visits += w.root.visits[action];
+            if (visits > most) {
+                most = visits;
+                best = action;
+            }
+        }
+        decisions++;
+        nanos += System.nanoTime() - start;
+
+        //passing ends the turn, so the trees will not be needed again
+        if (best == root.actions) {
+            last_action = -1;
+            return false;
+        }
+        last_action = best;
+        attacker = board.getTerritory(root.from[best]);
+        defender = board.getTerritory(root.to[best]);
+        return true;
+    }
+
+    /**
+     * Brings the workers' boards up to date and, if the board is exactly what
+     * the last chosen attack was expected to produce, moves each worker's root
+     * down to the matching outcome instead of starting over.
+     *
+     * @param live board the game is played on
+     */
+    private void prepare (Map live) {
+        //a new game (or board) starts the workers over, seeded from the
+        //position so the game does not depend on earlier ones
+        byte[] state = live.snapshot();
+        if (board != live || workers == null
+                || workers[0].board.getGraph() != live.getGraph()) {
+            board = live;
+            workers = new Worker[threads];
+            SplittableRandom seeds = new SplittableRandom(seed ^ GOLDEN_GAMMA
+                    * (31L * Arrays.hashCode(state) + live.playerIndex(p)));
+            for (int step = 0; step < threads; step++)
+                workers[step] = new Worker(new Map(live), seeds.split());
+            last_action = -1;
+        }
+
+        //replay the last attack on one copy to see if the tree still applies
+        boolean reuse = false;
+        if (last_action >= 0) {
+            Node root = workers[0].root;
+            int from = root.from[last_action], to = root.to[last_action];
+            boolean won = live.getOwner(to) == p;
+            Map copy = workers[0].board;
+            if (won) {
+                copy.getTerritory(to).setOwner(p);
+                copy.getTerritory(to).setDice(copy.getDice(from) - 1);
+            }
+            copy.getTerritory(from).setDice(1);
+            reuse = Arrays.equals(copy.snapshot(), state);
+            for (Worker w: workers)
+                w.root = reuse ? w.root.child(last_action, won) : new Node();
+        } else
+            for (Worker w: workers) w.root = new Node();
+
+        //copy the live position onto every worker's board
+        for (Worker w: workers) {
+            w.board.clearJournal();
+            w.board.restore(state);
+        }
+    }
+
+    /**
+     * creates the shared search pool
+     *
+     * @return pool of daemon threads, one per core at most
+     */
+    private static ThreadPoolExecutor createPool () {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(cores, cores, 1,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                    Thread t = new Thread(task, "mcts");
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * get number of decisions made
+     *
+     * @return number of decisions made
+     */
+    public long getDecisions () {return decisions;}
+
+    /**
+     * get number of playouts run
+     *
+     * @return number of playouts run
+     */
+    public long getPlayouts () {return playouts;}
+
+    /**
+     * get time spent deciding
+     *
+     * @return time spent deciding in nanoseconds
+     */
+    public long getNanos () {return nanos;}
+
+    /**
+     * One searcher: a copy of the board, a simulator over it and a tree
+     *
+     * @author Phillip Benoit
+     *
+     */
+    private class Worker {
+
+        /**
+         * private copy of the board
+         */
+        private final Map board;
+
+        /**
+         * simulator used to resolve attacks and reinforcements on the copy
+         */
+        private final Simulator sim;
+
+        /**
+         * root of this worker's tree
+         */
+        private Node root = new Node();
+
+        /**
+         * nodes and actions on the path of the current playout
+         */
+        private final Node[] path_nodes = new Node[MAX_DEPTH];
+        private final int[] path_actions = new int[MAX_DEPTH];
+
+        /**
+         * neighbor buffer
+         */
+        private final int[] neighbors;
+
+        /**
+         * attack buffer used while expanding a node
+         */
+        private long[] attacks = new long[16];
+
+        /**
+         * constructor
+         *
+         * @param board private copy of the board
+         * @param rng random number generator for this worker
+         */
+        Worker (Map board, SplittableRandom rng) {
+            this.board = board;
+            sim = new Simulator(board, rng);
+            sim.setTableDice(true);
+            sim.setOpenReinforce(true);
+            neighbors = new int[Math.max(1, board.getGraph().getMaxDegree())];
+        }
+
+        /**
+         * Runs playouts from the root until the deadline (at least one), or
+         * exactly the playout limit if there is one. Stops early, between
+         * playouts, if the decision is cancelled or this thread is
+         * interrupted.
+         *
+         * @param deadline System.nanoTime() value to stop at
+         * @return number of playouts run
+         */
+        int search (long deadline) {
+            int count = 0;
+            do {
+                playout();
+                count++;
+            } while (!cancelled && !Thread.currentThread().isInterrupted()
+                    && (playout_limit > 0 ? count < playout_limit
+                    : System.nanoTime() < deadline));
+            return count;
+        }
+
+        /**
+         * Walks down the tree with UCB1, rolling real dice for each attack,
+         * finishes the game greedily for a few rounds, scores the result and
+         * rolls the board back.
+         */
+        private void playout () {
+            int mark = board.mark(), depth = 0;
+            Node node = root;
+            while (true) {
+                if (node.from == null) expand(node);
+                int action = node.select();
+                path_nodes[depth] = node;
+                path_actions[depth++] = action;
+                if (action == node.actions) break;
+                boolean won = sim.attack(board.getTerritory(node.from[action]),
+                        board.getTerritory(node.to[action]));
+                if (depth == MAX_DEPTH
+                        || board.countTerritories(p) == board.OCCUPIED) break;
+                node = node.child(action, won);
+            }
+            double reward = finish();
+            for (int step = 0; step < depth; step++)
+                path_nodes[step].update(path_actions[step], reward);
+            board.undo(mark);
+        }
+
+        /**
+         * Lists the legal attacks from the current position, sorted by ID# so
+         * every worker numbers the same position's actions the same way.
+         *
+         * @param node node to fill in
+         */
+        private void expand (Node node) {
+            int border = board.countBorder(p), count = 0;
+            for (int k = 0; k < border; k++) {
+                int id = board.getBorder(p, k);
+                if (board.getDice(id) < 2) continue;
+                int found = board.getEnemyNeighbors(id, neighbors);
+                for (int step = 0; step < found; step++) {
+                    if (board.getOwnerIndex(neighbors[step]) < 0
+                            || BattleOdds.winChance(board.getDice(id),
+                            board.getDice(neighbors[step])) < LONG_SHOT) continue;
+                    if (count == attacks.length)
+                        attacks = Arrays.copyOf(attacks, count * 2);
+                    attacks[count++] = (long) id << 32 | neighbors[step];
+                }
+            }
+            Arrays.sort(attacks, 0, count);
+            int[] from = new int[count], to = new int[count];
+            for (int step = 0; step < count; step++) {
+                from[step] = (int) (attacks[step] >>> 32);
+                to[step] = (int) attacks[step];
+            }
+            node.expand(from, to);
+        }
+
+        /**
+         * Ends this player's turn and plays a few greedy rounds for everybody.
+         *
+         * @return share of the board this player holds afterward (1 for a win)
+         */
+        private double finish () {
+            int players = board.getPlayerCount(), me = board.playerIndex(p);
+            sim.awardDice(p);
+            for (int turn = 1; turn <= PLAYOUT_ROUNDS * players; turn++) {
+                Player q = board.getPlayer((me + turn) % players);
+                if (board.countTerritories(q) == 0) continue;
+                greedyTurn(q);
+                if (board.countTerritories(p) == 0) return 0;
+                if (board.countTerritories(q) == board.OCCUPIED) break;
+                sim.awardDice(q);
+            }
+            return (double) board.countTerritories(p) / board.OCCUPIED;
+        }
+
+        /**
+         * Attacks from every territory that is more likely than not to beat its
+         * weakest enemy neighbor, walking the property in ID# order (so
+         * territories captured along the way are included if they come later).
+         *
+         * @param q player whose turn it is
+         */
+        private void greedyTurn (Player q) {
+            for (int k = 0; k < board.countTerritories(q); k++) {
+                int id = board.getProperty(q, k).getIdNum();
+                int weakest = -1, found = board.getEnemyNeighbors(id, neighbors);
+                for (int step = 0; step < found; step++)
+                    if (board.getOwnerIndex(neighbors[step]) >= 0 && (weakest < 0
+                            || board.getDice(neighbors[step]) < board.getDice(weakest)))
+                        weakest = neighbors[step];
+                if (weakest >= 0 && BattleOdds.winChance(board.getDice(id),
+                        board.getDice(weakest)) > 0.5)
+                    sim.attack(board.getTerritory(id), board.getTerritory(weakest));
+            }
+        }
+    }
+
+    /**
+     * Search tree node: one decision for this player. The last action
+     * (index actions) is passing.
+     *
+     * @author Phillip Benoit
+     *
+     */
+    private static class Node {
+
+        /**
+         * attacking and defending territory ID#s of each attack
+         */
+        private int[] from, to;
+
+        /**
+         * number of attacks (passing is the action with this index)
+         */
+        private int actions;
+
+        /**
+         * visits and total reward of each action, and of the node
+         */
+        private int[] visits;
+        private double[] value;
+        private int total;
+
+        /**
+         * positions reached after each attack is won or lost
+         */
+        private Node[] won, lost;
+
+        /**
+         * fills in the node's actions
+         *
+         * @param attacks attacking territory ID#s
+         * @param targets defending territory ID#s
+         */
+        void expand (int[] attacks, int[] targets) {
+            from = attacks;
+            to = targets;
+            actions = attacks.length;
+            visits = new int[actions + 1];
+            value = new double[actions + 1];
+            won = new Node[actions];
+            lost = new Node[actions];
+        }
+
+        /**
+         * picks an action with UCB1 (untried actions first)
+         *
+         * @return action index
+         */
+        int select () {
+            int best = actions;
+            double best_score = Double.NEGATIVE_INFINITY, log = Math.log(total + 1);
+            for (int action = 0; action <= actions; action++) {
+                if (visits[action] == 0) return action;
+                double score = value[action] / visits[action]
+                        + EXPLORATION * Math.sqrt(log / visits[action]);
+                if (score > best_score) {
+                    best_score = score;
+                    best = action;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * records a playout result
+         *
+         * @param action action taken from this node
+         * @param reward playout reward
+         */
+        void update (int action, double reward) {
+            visits[action]++;
+            value[action] += reward;
+            total++;
+        }
+
+        /**
+         * gets (creating if needed) the node reached after an attack
+         *
+         * @param action attack index
+         * @param win true if the attack was won
+         * @return child node
+         */
+        Node child (int action, boolean win) {
+            Node[] outcomes = win ? won : lost;
+            if (outcomes[action] == null) outcomes[action] = new Node();
+            return outcomes[action];
+        }
+    }
+
+    @Override
+    /**
+     *Returns a reference to a territory that will be the source of the next
+     *attack. This method should be called only after willAttack() has been
+     *called.
+     */
+    public Territory getAttacker () {return attacker;}
+
+    @Override
+    /**
+     *Returns a reference to the territory object that will defend the attack
+     *of the territory just identified by getAttacker(). This method should be
+     *called only after getAttacker() has been called.
+     */
+    public Territory getDefender () {return defender;}
+
+    /**
+     * Entry point: plays MonteCarloStrategy against ComputerStrategy and
+     * reports the win rate and decision speed.
+     *
+     * @param args number of games, then optionally a seed
+     */
+    public static void main (String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        //create players
+        MonteCarloStrategy mcts = new MonteCarloStrategy();
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(Simulator.seat("Moe", mcts));
+        players.add(Simulator.seat("Larry", new ComputerStrategy()));
+
+        //play
+        Simulator sim = new Simulator(players, 5, 8, 10, 8,
+                new SplittableRandom(seed));
+        Scoreboard score = new Scoreboard();
+        for (int step = 0; step < games; step++)
+            score.record(players, sim.playGame(), sim.getTurns());
+
+        //report
+        System.out.print(score);
+        double seconds = mcts.getNanos() / 1e9;
+        System.out.printf("%d decisions in %.2f s (%.0f decisions/s, %.0f playouts/decision) on %d threads%n",
+                mcts.getDecisions(), seconds, mcts.getDecisions() / seconds,
+                (double) mcts.getPlayouts() / mcts.getDecisions(), mcts.threads);
+    }
+
+}
@@ -0,0 +1,143 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Irregular boards made of regions of any shape, read from a text file. The
+ * first line gives the rows and columns of the display layout (one region
+ * per cell); each following line lists a region's ID# and then the ID#s of
+ * the regions it touches. Blank lines and lines starting with # are
+ * skipped. Borders only need to be listed from one side, for example
+ *
+ * # a ring of four regions around a center one
+ * 1 5
+ * 0 1 3 4
+ * 1 2 4
+ * 2 3 4
+ * 3 4
+ *
+ * Every region must touch at least one other and the whole board must be
+ * connected.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class RegionTopology implements Topology {
+
+    /**
+     * size of the display layout
+     */
+    private final int rows, columns;
+
+    /**
+     * neighbor slots per region
+     */
+    private final int degree;
+
+    /**
+     * neighbor table
+     */
+    private final int[] table;
+
+    /**
+     * Builds a topology from lists of touching regions.
+     *
+     * @param rows number of rows in the display layout
+     * @param columns number of columns in the display layout
+     * @param borders pairs of touching region ID#s (either order)
+     */
+    public RegionTopology (int rows, int columns, int[][] borders) {
+        int total = rows * columns;
+        if (rows < 1 || columns < 1 || total < 2)
+            throw new IllegalArgumentException("board must have at least two regions");
+        this.rows = rows;
+        this.columns = columns;
+
+        //build the adjacency in a growable graph first (it drops repeats)
+        Graph g = new Graph(total);
+        for (int[] border: borders) {
+            if (border.length != 2 || border[0] == border[1]
+                    || Math.min(border[0], border[1]) < 0
+                    || Math.max(border[0], border[1]) >= total)
+                throw new IllegalArgumentException("bad border " + Arrays.toString(border));
+            g.addEdge(border[0], border[1]);
+        }
+        for (int index = 0; index < total; index++)
+            if (g.degree(index) == 0)
+                throw new IllegalArgumentException("region " + index + " touches no other");
+        if (!g.connected())
+            throw new IllegalArgumentException("regions are not all connected");
+
+        //pack it into the fixed stride table
+        degree = Math.max(1, g.getMaxDegree());
+        table = new int[total * degree];
+        Arrays.fill(table, -1);
+        for (int index = 0; index < total; index++)
+            for (int step = 0; step < g.degree(index); step++)
+                table[index * degree + step] = g.neighbor(index, step);
+    }
+
+    /**
+     * Reads a topology from a text file in the format described above.
+     *
+     * @param file file to read
+     * @return new topology
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is malformed
+     */
+    public static RegionTopology load (Path file) throws IOException {
+        int rows = -1, columns = -1, count = 0;
+        int[][] borders = new int[16][];
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s+");
+                try {
+
+                    //size line
+                    if (rows < 0) {
+                        if (fields.length != 2)
+                            throw new IllegalArgumentException("expected rows and columns: " + line);
+                        rows = Integer.parseInt(fields[0]);
+                        columns = Integer.parseInt(fields[1]);
+                        continue;
+                    }
+
+                    //region line
+                    int region = Integer.parseInt(fields[0]);
+                    for (int step = 1; step < fields.length; step++) {
+                        if (count == borders.length)
+                            borders = Arrays.copyOf(borders, count * 2);
+                        borders[count++] = new int[] {region, Integer.parseInt(fields[step])};
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("not a number in: " + line, e);
+                }
+            }
+        }
+        if (rows < 0) throw new IllegalArgumentException("empty topology file " + file);
+        return new RegionTopology(rows, columns, Arrays.copyOf(borders, count));
+    }
+
+    @Override
+    public int getRows () {return rows;}
+
+    @Override
+    public int getColumns () {return columns;}
+
+    @Override
+    public int getMaxDegree () {return degree;}
+
+    @Override
+    public int[] getNeighbors () {return table;}
+
+    @Override
+    public String toString () {
+        return "regions " + rows + "x" + columns;
+    }
+
+}
@@ -0,0 +1,140 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Win/loss/turn totals for a batch of headless games, grouped by the name of
+ * each player's strategy class. A scoreboard belongs to one thread; results
+ * from several threads are combined with add().
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class Scoreboard {
+
+    /**
+     * strategy names in the order they were first seen
+     */
+    private final ArrayList<String> names = new ArrayList<>();
+
+    /**
+     * games played, games won and turns played for each strategy
+     */
+    private long[] games = new long[4], wins = new long[4], turns = new long[4];
+
+    /**
+     * totals across all games
+     */
+    private long total_games, draws, total_turns;
+
+    /**
+     * Records the outcome of one game.
+     *
+     * @param players players in the game
+     * @param winner winning player (null for a draw)
+     * @param turnCount number of turns the game lasted
+     */
+    public void record (ArrayList<Player> players, Player winner, int turnCount) {
+        total_games++;
+        total_turns += turnCount;
+        if (winner == null) draws++;
+        for (Player p: players) {
+            int index = indexOf(nameOf(p));
+            games[index]++;
+            turns[index] += turnCount;
+            if (p == winner) wins[index]++;
+        }
+    }
+
+    /**
+     * Adds another scoreboard's totals to this one.
+     *
+     * @param other scoreboard to fold in
+     */
+    public void add (Scoreboard other) {
+        total_games += other.total_games;
+        draws += other.draws;
+        total_turns += other.total_turns;
+        for (int step = 0; step < other.names.size(); step++) {
+            int index = indexOf(other.names.get(step));
+            games[index] += other.games[step];
+            wins[index] += other.wins[step];
+            turns[index] += other.turns[step];
+        }
+    }
+
+    /**
+     * get number of games recorded
+     *
+     * @return number of games recorded
+     */
+    public long getGames () {return total_games;}
+
+    /**
+     * get number of games that ended without a winner
+     *
+     * @return number of draws
+     */
+    public long getDraws () {return draws;}
+
+    /**
+     * get number of games won by a strategy
+     *
+     * @param strategy simple class name of the strategy
+     * @return number of wins (0 if the strategy never played)
+     */
+    public long getWins (String strategy) {
+        int index = names.indexOf(strategy);
+        return index < 0 ? 0 : wins[index];
+    }
+
+    /**
+     * Name used to group a player's results.
+     *
+     * @param p player
+     * @return simple class name of the player's strategy (of the guarded
+     * strategy if it is a GuardedStrategy)
+     */
+    public static String nameOf (Player p) {
+        Strategy strategy = p.getStrategy();
+        if (strategy instanceof GuardedStrategy)
+            strategy = ((GuardedStrategy) strategy).getInner();
+        return strategy.getClass().getSimpleName();
+    }
+
+    /**
+     * finds or adds the slot for a strategy name
+     *
+     * @param name strategy name
+     * @return slot index
+     */
+    private int indexOf (String name) {
+        int index = names.indexOf(name);
+        if (index >= 0) return index;
+        names.add(name);
+        index = names.size() - 1;
+        if (index == games.length) {
+            games = Arrays.copyOf(games, index * 2);
+            wins = Arrays.copyOf(wins, index * 2);
+            turns = Arrays.copyOf(turns, index * 2);
+        }
+        return index;
+    }
+
+    @Override
+    /**
+     * One line per strategy followed by the overall totals.
+     */
+    public String toString () {
+        StringBuilder out = new StringBuilder();
+        for (int step = 0; step < names.size(); step++)
+            out.append(String.format("%-24s games %10d  wins %10d  (%5.1f%%)  avg turns %6.1f%n",
+                    names.get(step), games[step], wins[step],
+                    games[step] == 0 ? 0.0 : 100.0 * wins[step] / games[step],
+                    games[step] == 0 ? 0.0 : (double) turns[step] / games[step]));
+        out.append(String.format("%-24s games %10d  draws %9d  avg turns %6.1f%n",
+                "total", total_games, draws,
+                total_games == 0 ? 0.0 : (double) total_turns / total_games));
+        return out.toString();
+    }
+
+}
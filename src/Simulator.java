@@ -0,0 +1,371 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Headless Bones Battle engine. Plays complete games between Strategy
+ * implementations with the same rules as the Bones GUI (attacks, dice rolls,
+ * captures and end of turn reinforcements) but without any windows or
+ * delays. One simulator reuses one Map for every game it plays, so it should
+ * be used by a single thread.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class Simulator {
+
+    /**
+     * number of rounds (every player moving once) before a game is a draw
+     */
+    public static final int ROUND_LIMIT = 500;
+
+    /**
+     * true if new simulators retry random territories for reinforcements
+     * as the original game did (set with -Dbones.retryReinforce=true)
+     */
+    public static final boolean RETRY_REINFORCE = Boolean.getBoolean("bones.retryReinforce");
+
+    /**
+     * players taking part in every game
+     */
+    private final ArrayList<Player> players;
+
+    /**
+     * board reused for every game
+     */
+    private final Map board;
+
+    /**
+     * source of randomness for boards, turn order and dice
+     */
+    private RandomGenerator rng;
+
+    /**
+     * number of turns played in the last game
+     */
+    private int turns;
+
+    /**
+     * record of the games played (null if not recording)
+     */
+    private GameLog log;
+
+    /**
+     * true to roll each side's total with one draw from BattleDice
+     */
+    private boolean table_dice;
+
+    /**
+     * true to hand out reinforcements from the board's open lists
+     */
+    private boolean open_reinforce = !RETRY_REINFORCE;
+
+    /**
+     * constructor
+     *
+     * @param players players (with strategies) taking part in every game
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param victims number of unused spaces
+     * @param maxDice max number of dice per territory
+     * @param rng source of randomness for boards, turn order and dice
+     */
+    public Simulator (ArrayList<Player> players, int rows, int columns,
+            int victims, int maxDice, RandomGenerator rng) {
+        this.players = players;
+        this.rng = rng;
+        board = new Map(players, rows, columns, victims, maxDice, rng);
+    }
+
+    /**
+     * constructor for playing out positions on an existing board (the board's
+     * players take part)
+     *
+     * @param board board to play on
+     * @param rng source of randomness for turn order and dice
+     */
+    public Simulator (Map board, RandomGenerator rng) {
+        players = new ArrayList<>();
+        for (int step = 0; step < board.getPlayerCount(); step++)
+            players.add(board.getPlayer(step));
+        this.board = board;
+        this.rng = rng;
+    }
+
+    /**
+     * get board used by the last game
+     *
+     * @return board used by the last game
+     */
+    public Map getBoard () {return board;}
+
+    /**
+     * get players taking part in every game
+     *
+     * @return players taking part in every game
+     */
+    public ArrayList<Player> getPlayers () {return players;}
+
+    /**
+     * get number of turns played in the last game
+     *
+     * @return number of turns played in the last game
+     */
+    public int getTurns () {return turns;}
+
+    /**
+     * replace the source of randomness used by the following games
+     *
+     * @param generator source of randomness
+     */
+    public void setRandom (RandomGenerator generator) {rng = generator;}
+
+    /**
+     * Rolls each side's total with one draw from BattleDice instead of one
+     * draw per die. The totals have the same chances, but a seed no longer
+     * gives the same games as before.
+     *
+     * @param tableDice true to use BattleDice
+     */
+    public void setTableDice (boolean tableDice) {table_dice = tableDice;}
+
+    /**
+     * Hands out each reinforcement die to a random territory picked from the
+     * player's territories with room (Map.getOpen()) instead of retrying
+     * random territories until one has room, so a turn's reinforcements cost
+     * O(dice added). Every territory with room is equally likely either way.
+     * This is the default unless RETRY_REINFORCE is set; turn it off to hand
+     * out dice with the original retry loop.
+     *
+     * @param openReinforce true to use the open lists
+     */
+    public void setOpenReinforce (boolean openReinforce) {open_reinforce = openReinforce;}
+
+    /**
+     * record the following games (null to stop recording)
+     *
+     * @param log game log
+     */
+    public void setLog (GameLog log) {this.log = log;}
+
+    /**
+     * get record of the games played
+     *
+     * @return game log (null if not recording)
+     */
+    public GameLog getLog () {return log;}
+
+    /**
+     * Plays one game on a freshly generated board.
+     *
+     * @return winning player (null if the round limit was reached)
+     * @throws UncheckedIOException if the game log cannot be written
+     */
+    public Player playGame () {
+        board.generate(rng);
+        int count = players.size(), current = rng.nextInt(count);
+        turns = 0;
+        if (log != null) log.startGame(board);
+
+        //players take turns until one owns the whole board
+        Player winner = null;
+        for (int step = 0; step < ROUND_LIMIT * count && winner == null; step++) {
+            Player p = players.get(current);
+            if (board.countTerritories(p) > 0) {
+                turns++;
+                if (log != null) log.turn(board.playerIndex(p));
+                if (playTurn(p)) winner = p;
+            }
+            current = (current + 1) % count;
+        }
+
+        //null if the round limit was reached
+        if (log != null)
+            try {
+                log.endGame(board.playerIndex(winner));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        return winner;
+    }
+
+    /**
+     * Plays one turn: the player attacks for as long as its strategy wants
+     * to and then receives reinforcements. An illegal move ends the turn.
+     *
+     * @param p player to move
+     * @return true if the player now owns every territory
+     */
+    public boolean playTurn (Player p) {
+        while (willAttack(p)) {
+            Territory attacker = p.getAttacker(), defender = p.getDefender();
+            if (!isLegal(p, attacker, defender)) break;
+            attack(attacker, defender);
+            if (board.countTerritories(p) == board.OCCUPIED) return true;
+        }
+        awardDice(p);
+        return false;
+    }
+
+    /**
+     * asks a player's strategy whether to attack (timed when metrics are on)
+     *
+     * @param p player to move
+     * @return true if the player attacks
+     */
+    private boolean willAttack (Player p) {
+        long start = Metrics.start();
+        boolean attack = p.willAttack(board);
+        Metrics.WILL_ATTACK.stop(start);
+        return attack;
+    }
+
+    /**
+     * Tests an attack against the rules: the attacker belongs to the player
+     * and has at least two dice, and the defender is an adjacent enemy.
+     *
+     * @param p player making the attack
+     * @param attacker attacking territory
+     * @param defender defending territory
+     * @return true if the attack is allowed
+     */
+    public boolean isLegal (Player p, Territory attacker, Territory defender) {
+        return attacker != null && defender != null
+                && attacker.getOwner() == p && attacker.getDice() > 1
+                && defender.getOwner() != null && defender.getOwner() != p
+                && board.getGraph().isEdge(attacker.getIdNum(), defender.getIdNum());
+    }
+
+    /**
+     * Resolves an attack. Both sides roll all of their dice; if the attacker's
+     * total is higher the defender is captured and receives all but one of the
+     * attacker's dice. Either way the attacker is left with one die.
+     *
+     * @param attacker attacking territory
+     * @param defender defending territory
+     * @return true if the defender was captured
+     */
+    public boolean attack (Territory attacker, Territory defender) {
+        int attack = roll(attacker.getDice()), defense = roll(defender.getDice());
+        if (log != null && log.isRecording())
+            log.attack(attacker.getIdNum(), defender.getIdNum(), attack, defense);
+        boolean won = attack > defense;
+        if (won) {
+            defender.setOwner(attacker.getOwner());
+            defender.setDice(attacker.getDice() - 1);
+        }
+        attacker.setDice(1);
+        return won;
+    }
+
+    /**
+     * Gives a player as many dice as there are territories in the player's
+     * largest connected cluster, spread randomly over territories that are not
+     * yet full.
+     *
+     * @param p player receiving dice
+     */
+    public void awardDice (Player p) {
+        int award = board.countConnected(p), owned = board.countTerritories(p);
+
+        //one pick per die (running out of room fills every territory)
+        if (open_reinforce) {
+            for (int step = 0; step < award && board.countOpen(p) > 0; step++) {
+                int id = board.getOpen(p, rng.nextInt(board.countOpen(p)));
+                board.setDice(id, board.getDice(id) + 1);
+                if (log != null && log.isRecording()) log.die(id);
+            }
+            return;
+        }
+
+        //fill every territory if there is not enough room for the award
+        if (award >= board.MAXDICE * owned - board.countDice(p)) {
+            if (log != null && log.isRecording()) log.fill();
+            for (int step = 0; step < owned; step++)
+                board.getProperty(p, step).setDice(board.MAXDICE);
+            return;
+        }
+
+        //otherwise add one die at a time to random territories with room
+        for (int step = 0; step < award; step++) {
+            Territory t;
+            do t = board.getProperty(p, rng.nextInt(owned));
+            while (t.getDice() >= board.MAXDICE);
+            t.setDice(t.getDice() + 1);
+            if (log != null && log.isRecording()) log.die(t.getIdNum());
+        }
+    }
+
+    /**
+     * sums a roll of six sided dice
+     *
+     * @param dice number of dice to roll
+     * @return total of the roll
+     */
+    private int roll (int dice) {
+        if (table_dice) return BattleDice.roll(dice, rng);
+        int total = 0;
+        for (int step = 0; step < dice; step++)
+            total += rng.nextInt(6) + 1;
+        return total;
+    }
+
+    /**
+     * Creates a player controlled by the given strategy.
+     *
+     * @param name player name
+     * @param strategy strategy controlling the player
+     * @return new player
+     */
+    public static Player seat (String name, Strategy strategy) {
+        Player p = new Player(name, new Color(name.hashCode() & 0xFFFFFF));
+        p.setStrategy(strategy);
+        strategy.setPlayer(p);
+        return p;
+    }
+
+    /**
+     * Entry point: plays a batch of games between the supplied strategies and
+     * prints a summary.
+     *
+     * @param args number of games, then optionally a seed and a file to log
+     * the games to; with -Dbones.retryReinforce=true reinforcements use the
+     * original retry loop
+     * @throws IOException if the game log cannot be written
+     */
+    public static void main (String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        //create players
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(seat("Moe", new ComputerStrategy()));
+        players.add(seat("Larry", new pbenoit()));
+        players.add(seat("Curly", new MilquetoastStrategy()));
+
+        //play the games on a board the size of the GUI's
+        Simulator sim = new Simulator(players, 5, 8, 10, 8,
+                new SplittableRandom(seed));
+        if (args.length > 2) sim.setLog(new GameLog(Paths.get(args[2])));
+        Scoreboard score = new Scoreboard();
+        long start = System.nanoTime();
+        for (int step = 0; step < games; step++) {
+            Player winner = sim.playGame();
+            score.record(players, winner, sim.getTurns());
+        }
+        if (sim.getLog() != null) sim.getLog().close();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        //report
+        System.out.print(score);
+        System.out.printf("%d games in %.2f s (%.0f games/minute), seed %d%n",
+                games, seconds, games / seconds * 60, seed);
+        if (Metrics.ENABLED) System.out.println(Metrics.toJson());
+    }
+
+}
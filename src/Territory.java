@@ -1,6 +1,10 @@
 /**
  * Territory object for a Bones Battle board
  * 
+ * A territory is a lightweight view: its owner and dice live in the map's
+ * per territory arrays, and the object itself only remembers the map and its
+ * ID#. Reading or changing a territory reads or changes the board.
+ * 
  * @author Phillip Benoit
  *
  */
@@ -12,39 +16,44 @@ public class Territory {
     private Map map;
     
     /**
-     * number of dice on the space and ID
-     */
-    private int number_of_dice, id;
-    
-    /**
-     * associated owning player
+     * ID
      */
-    private Player owner;
+    private int id;
     
     /**
-     * default constructor
+     * default constructor (views territory 0 of the map)
      * 
      * @param map associated map
      */
     public Territory(Map map) {
-        this.map = map;
-        owner = null;
-        number_of_dice = 0;
-        id = 0;
+        this(map, 0);
     }
     
     /**
-     * Parameterized constructor
+     * Parameterized constructor (views the territory with the given ID and
+     * sets its owner and dice on the map, as setOwner() and setDice() do)
      * 
      * @param map associated map
      * @param owner associated owner
      * @param dice number of dice
      * @param idNum ID
+     * @throws IllegalArgumentException if the owner is not in the map's game
+     * or the dice are not between 0 and the map's MAXDICE
      */
     public Territory (Map map, Player owner, int dice, int idNum) {
+        this(map, idNum);
+        setOwner(owner);
+        setDice(dice);
+    }
+    
+    /**
+     * view constructor used by the map
+     * 
+     * @param map associated map
+     * @param idNum ID
+     */
+    Territory (Map map, int idNum) {
         this.map = map;
-        this.owner = owner;
-        number_of_dice = dice;
         id = idNum;
     }
     
@@ -53,7 +62,7 @@ public class Territory {
      * 
      * @return number of dice in territory
      */
-    int getDice () {return number_of_dice;}
+    int getDice () {return map.getDice(id);}
     
     /**
      * get ID number
@@ -74,28 +83,31 @@ public class Territory {
      * 
      * @return associated owning player
      */
-    Player getOwner () {return owner;}
+    Player getOwner () {return map.getOwner(id);}
     
     /**
-     * set number of dice in territory
+     * set number of dice in territory (keeps the map's per player totals
+     * current)
      * 
      * @param d number of dice in territory
+     * @throws IllegalArgumentException if d is not between 0 and the map's
+     * MAXDICE
      */
-    void setDice(int d) {number_of_dice = d;}
+    void setDice(int d) {map.setDice(id, d);}
     
     /**
-     * set ID number
+     * set ID number (points the view at another territory)
      * 
      * @param n ID number
      */
     void setIdNum (int n) {id = n;}
     
     /**
-     * set owning player
+     * set owning player (keeps the map's per player indexes current)
      * 
      * @param o owning player
      */
-    void setOwner (Player o) {owner = o;}
+    void setOwner (Player o) {map.setOwner(id, o);}
     
     /**
      * get row (calculated from ID and map data)
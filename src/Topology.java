@@ -0,0 +1,66 @@
+/**
+ * Shape of a Bones Battle board: which cells exist and which of them touch.
+ * Cells are numbered 0 to getRows() * getColumns() - 1 and are laid out row
+ * by row for display (Territory.getRow() and getCol()). The neighbors of
+ * every cell are kept in one flat table with a fixed number of slots per
+ * cell, so boards of any shape are built and searched with the same
+ * primitive fixed stride code as the square grid.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public interface Topology {
+
+    /**
+     * get number of rows in the display layout
+     *
+     * @return number of rows
+     */
+    int getRows ();
+
+    /**
+     * get number of columns in the display layout
+     *
+     * @return number of columns
+     */
+    int getColumns ();
+
+    /**
+     * get number of neighbor slots per cell (the most neighbors any cell can
+     * have)
+     *
+     * @return slots per cell
+     */
+    int getMaxDegree ();
+
+    /**
+     * Gets the neighbor table: the neighbors of cell c are at
+     * c * getMaxDegree() to (c + 1) * getMaxDegree() - 1, padded with -1.
+     * The table is shared and must not be changed.
+     *
+     * @return neighbor table
+     */
+    int[] getNeighbors ();
+
+    /**
+     * get number of cells
+     *
+     * @return number of cells
+     */
+    default int size () {return getRows() * getColumns();}
+
+    /**
+     * Counts the slots of a cell that hold a neighbor.
+     *
+     * @param index cell ID#
+     * @return number of neighboring cells
+     */
+    default int degree (int index) {
+        int[] table = getNeighbors();
+        int count = 0, stride = getMaxDegree();
+        for (int slot = index * stride; slot < (index + 1) * stride; slot++)
+            if (table[slot] >= 0) count++;
+        return count;
+    }
+
+}
@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Round-robin tournament between Strategy implementations, played headless
+ * on a ForkJoin pool. Every combination of entrants sized to the table plays
+ * the same number of games. The games are split into batches that idle
+ * workers steal from each other; each worker keeps its own simulators (and
+ * so its own boards and strategy objects) and its own scoreboard, and the
+ * scoreboards are merged as the batches join, so no locks are taken.
+ *
+ * Every game draws its randomness from a SplittableRandom seeded from the
+ * master seed and the game's number, so a tournament gives the same results
+ * however the work is spread across cores.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class Tournament {
+
+    /**
+     * number of games a batch plays itself instead of splitting
+     */
+    private static final int GRAIN = 256;
+
+    /**
+     * mixing constant used to spread game numbers across seeds
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * factories for each entrant's strategy
+     */
+    private final List<Supplier<Strategy>> entrants;
+
+    /**
+     * entrant indices seated at each table
+     */
+    private final int[][] tables;
+
+    /**
+     * board settings
+     */
+    private final int rows, columns, victims, maxDice;
+
+    /**
+     * master seed
+     */
+    private final long seed;
+
+    /**
+     * simulators for each table, created on first use by each worker
+     */
+    private final ThreadLocal<Simulator[]> simulators;
+
+    /**
+     * number of games played at each table
+     */
+    private long gamesPerTable;
+
+    /**
+     * constructor
+     *
+     * @param entrants factories for each entrant's strategy
+     * @param seats number of players at each table
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param victims number of unused spaces
+     * @param maxDice max number of dice per territory
+     * @param seed master seed
+     */
+    public Tournament (List<Supplier<Strategy>> entrants, int seats, int rows,
+            int columns, int victims, int maxDice, long seed) {
+        this.entrants = entrants;
+        this.rows = rows;
+        this.columns = columns;
+        this.victims = victims;
+        this.maxDice = maxDice;
+        this.seed = seed;
+        ArrayList<int[]> list = new ArrayList<>();
+        combinations(new int[seats], 0, 0, list);
+        tables = list.toArray(new int[0][]);
+        simulators = ThreadLocal.withInitial(() -> new Simulator[tables.length]);
+    }
+
+    /**
+     * get number of tables in the round robin
+     *
+     * @return number of tables
+     */
+    public int getTables () {return tables.length;}
+
+    /**
+     * Plays every table the given number of times.
+     *
+     * @param games number of games played at each table
+     * @param pool pool to play the games on
+     * @return combined results
+     */
+    public Scoreboard run (long games, ForkJoinPool pool) {
+        gamesPerTable = games;
+        return pool.invoke(new Batch(0, games * tables.length));
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param game game number (table * games per table + round)
+     * @param score scoreboard to record the result on
+     */
+    private void play (long game, Scoreboard score) {
+        int table = (int) (game / gamesPerTable);
+        Simulator[] mine = simulators.get();
+        if (mine[table] == null) mine[table] = seatTable(table);
+        Simulator sim = mine[table];
+        sim.setRandom(new SplittableRandom(seed + GOLDEN_GAMMA * (game + 1)));
+        Player winner = sim.playGame();
+        score.record(sim.getPlayers(), winner, sim.getTurns());
+    }
+
+    /**
+     * creates a simulator with fresh strategies for one table
+     *
+     * @param table table index
+     * @return new simulator
+     */
+    private Simulator seatTable (int table) {
+        ArrayList<Player> players = new ArrayList<>();
+        for (int seat = 0; seat < tables[table].length; seat++)
+            players.add(Simulator.seat("Player" + seat,
+                    entrants.get(tables[table][seat]).get()));
+        return new Simulator(players, rows, columns, victims, maxDice,
+                new SplittableRandom(seed));
+    }
+
+    /**
+     * lists every combination of entrants that fills a table
+     *
+     * @param seated entrants chosen so far
+     * @param count number of seats filled
+     * @param next first entrant that may take the next seat
+     * @param out list receiving completed tables
+     */
+    private void combinations (int[] seated, int count, int next,
+            ArrayList<int[]> out) {
+        if (count == seated.length) {
+            out.add(seated.clone());
+            return;
+        }
+        for (int entrant = next; entrant < entrants.size(); entrant++) {
+            seated[count] = entrant;
+            combinations(seated, count + 1, entrant + 1, out);
+        }
+    }
+
+    /**
+     * A range of game numbers, split in half until it is small enough to play
+     *
+     * @author Phillip Benoit
+     *
+     */
+    private class Batch extends RecursiveTask<Scoreboard> {
+
+        /**
+         * serialization version (ForkJoinTask is Serializable, but batches are
+         * never serialized)
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * first and one past the last game number in the range
+         */
+        private final long from, to;
+
+        /**
+         * constructor
+         *
+         * @param from first game number
+         * @param to one past the last game number
+         */
+        Batch (long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Scoreboard compute () {
+            if (to - from <= GRAIN) {
+                Scoreboard score = new Scoreboard();
+                for (long game = from; game < to; game++)
+                    play(game, score);
+                return score;
+            }
+            long middle = (from + to) >>> 1;
+            Batch left = new Batch(from, middle);
+            left.fork();
+            Scoreboard score = new Batch(middle, to).compute();
+            score.add(left.join());
+            return score;
+        }
+    }
+
+    /**
+     * Entry point: plays a round robin between strategy classes named on the
+     * command line and prints a summary.
+     *
+     * @param args games per table, seed, seats per table, then strategy class
+     * names (defaults to ComputerStrategy, pbenoit and MilquetoastStrategy);
+     * with -Dbones.deadline=ms every strategy runs under a GuardedStrategy,
+     * and with -Dbones.retryReinforce=true reinforcements use the original
+     * retry loop (see Simulator.setOpenReinforce()).
+     * MonteCarloStrategy searches on one thread per game unless
+     * -Dmcts.threads says otherwise, since the games already use every core
+     * @throws ReflectiveOperationException if a strategy cannot be created
+     */
+    public static void main (String[] args) throws ReflectiveOperationException {
+        System.setProperty("java.awt.headless", "true");
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int seats = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        //load the strategies the same way the game does, by class name
+        ArrayList<String> names = new ArrayList<>();
+        for (int step = 3; step < args.length; step++) names.add(args[step]);
+        if (names.isEmpty())
+            names.addAll(List.of("ComputerStrategy", "pbenoit", "MilquetoastStrategy"));
+        ArrayList<Supplier<Strategy>> entrants = new ArrayList<>();
+        boolean guarded = System.getProperty("bones.deadline") != null;
+        if (System.getProperty("mcts.threads") == null)
+            System.setProperty("mcts.threads", "1");
+        for (String name: names) {
+            Class<? extends Strategy> type =
+                    Class.forName(name).asSubclass(Strategy.class);
+            //fail early if the class cannot be created
+            type.getDeclaredConstructor().newInstance();
+            entrants.add(() -> {
+                try {
+                    Strategy strategy = type.getDeclaredConstructor().newInstance();
+                    return guarded ? new GuardedStrategy(strategy) : strategy;
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        //play the round robin on every core
+        Tournament t = new Tournament(entrants, seats, 5, 8, 10, 8, seed);
+        ForkJoinPool pool = new ForkJoinPool();
+        long start = System.nanoTime();
+        Scoreboard score = t.run(games, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        //report
+        System.out.print(score);
+        System.out.printf("%d games at %d tables on %d workers in %.2f s (%.0f games/minute), seed %d%n",
+                score.getGames(), t.getTables(), pool.getParallelism(), seconds,
+                score.getGames() / seconds * 60, seed);
+        if (guarded) System.out.print(GuardedStrategy.report());
+    }
+
+}
@@ -0,0 +1,217 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntUnaryOperator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The per player indexes Map keeps up to date (property, largest cluster,
+ * border and open lists) must always match what a scan of the whole board
+ * finds, through random changes, copies, restores and undos.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BoardIndexTest {
+
+    /**
+     * Makes random changes to active territories, sometimes leaving one
+     * without an owner.
+     *
+     * @param board board to change
+     * @param changes number of changes
+     * @param rng source of the changes
+     */
+    private static void scramble (Map board, int changes, SplittableRandom rng) {
+        Graph graph = board.getGraph();
+        for (int step = 0; step < changes; step++) {
+            int id;
+            do id = rng.nextInt(board.NUMTERRITORIES);
+            while (!graph.isInGraph(id));
+            int choice = rng.nextInt(10);
+            if (choice == 0) board.setOwner(id, null);
+            else if (choice < 5)
+                board.setOwner(id, board.getPlayer(rng.nextInt(board.getPlayerCount())));
+            else board.setDice(id, rng.nextInt(board.MAXDICE + 1));
+        }
+    }
+
+    /**
+     * finds the largest cluster of a player's territories by searching the
+     * graph
+     *
+     * @param board board to scan
+     * @param p player index
+     * @return size of the largest cluster
+     */
+    private static int largest (Map board, int p) {
+        Graph graph = board.getGraph();
+        boolean[] seen = new boolean[board.NUMTERRITORIES];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int largest = 0;
+        for (int start = 0; start < board.NUMTERRITORIES; start++) {
+            if (seen[start] || !graph.isInGraph(start) || board.getOwnerIndex(start) != p)
+                continue;
+            int size = 0;
+            seen[start] = true;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int id = queue.poll();
+                size++;
+                for (int next: graph.getAdjacent(id))
+                    if (!seen[next] && board.getOwnerIndex(next) == p) {
+                        seen[next] = true;
+                        queue.add(next);
+                    }
+            }
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    /**
+     * lists the entries of one of a player's unordered lists in ID# order
+     *
+     * @param count number of entries
+     * @param entry entry at each position
+     * @return sorted entries
+     */
+    private static int[] sorted (int count, IntUnaryOperator entry) {
+        int[] ids = new int[count];
+        for (int index = 0; index < count; index++) ids[index] = entry.applyAsInt(index);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * checks every index of every player against a scan of the board
+     *
+     * @param board board to check
+     */
+    private static void assertIndexed (Map board) {
+        Graph graph = board.getGraph();
+        for (int p = 0; p < board.getPlayerCount(); p++) {
+            Player player = board.getPlayer(p);
+            List<Integer> property = new ArrayList<>(), border = new ArrayList<>(),
+                    open = new ArrayList<>();
+            int dice = 0;
+            for (int id = 0; id < board.NUMTERRITORIES; id++) {
+                if (!graph.isInGraph(id) || board.getOwnerIndex(id) != p) continue;
+                property.add(id);
+                dice += board.getDice(id);
+                for (int next: graph.getAdjacent(id))
+                    if (board.getOwnerIndex(next) != p) {
+                        border.add(id);
+                        break;
+                    }
+                if (board.getDice(id) < board.MAXDICE) open.add(id);
+            }
+
+            List<Integer> listed = new ArrayList<>();
+            for (Territory t: board.getPropertyOf(player)) listed.add(t.getIdNum());
+            assertEquals(property, listed, "property of player " + p);
+            assertEquals(property.size(), board.countTerritories(player),
+                    "territories of player " + p);
+            assertEquals(dice, board.countDice(player), "dice of player " + p);
+            assertEquals(largest(board, p), board.countConnected(player),
+                    "largest cluster of player " + p);
+            assertArrayEquals(border.stream().mapToInt(Integer::intValue).toArray(),
+                    sorted(board.countBorder(player), index -> board.getBorder(player, index)),
+                    "border of player " + p);
+            assertArrayEquals(open.stream().mapToInt(Integer::intValue).toArray(),
+                    sorted(board.countOpen(player), index -> board.getOpen(player, index)),
+                    "open list of player " + p);
+        }
+    }
+
+    /**
+     * lists a board of every kind
+     *
+     * @param rng source of the boards
+     * @return boards
+     */
+    private static List<Map> boards (SplittableRandom rng) {
+        ArrayList<Player> players = GeneratorTest.players(3);
+        List<Topology> shapes = new ArrayList<>();
+        for (GridTopology.Shape shape: GridTopology.Shape.values())
+            shapes.add(GridTopology.of(shape, 9, 11));
+        shapes.add(GeneratorTest.regions(9, 11, rng));
+        List<Map> boards = new ArrayList<>();
+        for (Topology shape: shapes)
+            for (Map.Generator mode: Map.Generator.values())
+                boards.add(new Map(players, shape, 20, 8, rng.split(), mode));
+        return boards;
+    }
+
+    /**
+     * random changes, checked after every one
+     */
+    @Test
+    public void indexesFollowEveryChange () {
+        SplittableRandom rng = new SplittableRandom(25);
+        for (Map board: boards(rng)) {
+            assertIndexed(board);
+            for (int step = 0; step < 300; step++) {
+                scramble(board, 1, rng);
+                assertIndexed(board);
+            }
+        }
+    }
+
+    /**
+     * copies index their own board, changing a copy leaves the original
+     * alone, and restoring the copy's snapshot indexes the original again
+     */
+    @Test
+    public void indexesSurviveCopiesAndRestores () {
+        SplittableRandom rng = new SplittableRandom(26);
+        for (Map board: boards(rng)) {
+            for (int trial = 0; trial < 20; trial++) {
+                scramble(board, rng.nextInt(30), rng);
+                byte[] before = board.snapshot();
+                Map copy = new Map(board);
+                assertArrayEquals(before, copy.snapshot());
+                assertIndexed(copy);
+                scramble(copy, 1 + rng.nextInt(30), rng);
+                assertIndexed(copy);
+                assertArrayEquals(before, board.snapshot());
+                assertIndexed(board);
+                board.restore(copy.snapshot());
+                assertArrayEquals(copy.snapshot(), board.snapshot());
+                assertIndexed(board);
+            }
+        }
+    }
+
+    /**
+     * undoing back to each mark indexes the board it started from
+     */
+    @Test
+    public void indexesSurviveUndo () {
+        SplittableRandom rng = new SplittableRandom(27);
+        for (Map board: boards(rng)) {
+            for (int trial = 0; trial < 20; trial++) {
+                byte[] outer = board.snapshot();
+                int first = board.mark();
+                scramble(board, rng.nextInt(30), rng);
+                assertIndexed(board);
+                byte[] inner = board.snapshot();
+                int second = board.mark();
+                scramble(board, rng.nextInt(30), rng);
+                board.undo(second);
+                assertArrayEquals(inner, board.snapshot());
+                assertIndexed(board);
+                board.undo(first);
+                assertArrayEquals(outer, board.snapshot());
+                assertIndexed(board);
+            }
+            board.clearJournal();
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Boards stored with BoardView must load back unchanged, and only onto a
+ * board they fit.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class BoardViewTest {
+
+    /**
+     * a board on a region topology loads onto its own topology but not onto
+     * a different one of the same size
+     */
+    @Test
+    public void regionBoardsLoadOnlyOntoTheirTopology () {
+        SplittableRandom rng = new SplittableRandom(8);
+        ArrayList<Player> players = GeneratorTest.players(3);
+        RegionTopology shape = GeneratorTest.regions(6, 7, rng);
+        RegionTopology other = GeneratorTest.regions(6, 7, rng);
+        Map board = new Map(players, shape, 8, 8, new SplittableRandom(1), Map.Generator.FAST);
+        BoardView view = new BoardView(BoardView.encode(board));
+
+        Map same = new Map(players, shape, 8, 8, new SplittableRandom(2), Map.Generator.FAST);
+        same.load(view);
+        assertArrayEquals(board.snapshot(), same.snapshot());
+
+        Map different = new Map(players, other, 8, 8, new SplittableRandom(2), Map.Generator.FAST);
+        assertEquals("stored board does not fit this map", assertThrows(
+                IllegalArgumentException.class, () -> different.load(view)).getMessage());
+    }
+
+    /**
+     * Builds boards of every shape with random owners and dice up to
+     * maxDice.
+     *
+     * @param maxDice max number of dice per territory
+     * @param rng source of the boards
+     * @return boards
+     */
+    private static List<Map> boards (int maxDice, SplittableRandom rng) {
+        ArrayList<Player> players = GeneratorTest.players(4);
+        List<Topology> shapes = new ArrayList<>();
+        for (GridTopology.Shape shape: GridTopology.Shape.values())
+            shapes.add(GridTopology.of(shape, 7, 9));
+        shapes.add(GeneratorTest.regions(7, 9, rng));
+        List<Map> boards = new ArrayList<>();
+        for (Topology shape: shapes)
+            for (Map.Generator mode: Map.Generator.values()) {
+                Map board = new Map(players, shape, 12, maxDice, rng.split(), mode);
+                for (int id = 0; id < board.NUMTERRITORIES; id++) {
+                    if (!board.getGraph().isInGraph(id)) continue;
+                    board.setOwner(id, players.get(rng.nextInt(players.size())));
+                    board.setDice(id, 1 + rng.nextInt(maxDice));
+                }
+                boards.add(board);
+            }
+        return boards;
+    }
+
+    /**
+     * checks a stored board against the board it was stored from
+     *
+     * @param board original board
+     * @param view stored board
+     */
+    private static void assertStored (Map board, BoardView view) {
+        assertEquals(board.ROWS, view.getRows());
+        assertEquals(board.COLUMNS, view.getColumns());
+        assertEquals(board.VICTIMS, view.getVictims());
+        assertEquals(board.MAXDICE, view.getMaxDice());
+        assertEquals(board.getGenerator(), view.getGenerator());
+        assertEquals(BoardView.size(board), view.getSize());
+        for (int id = 0; id < board.NUMTERRITORIES; id++) {
+            boolean active = board.getGraph().isInGraph(id);
+            assertEquals(active, view.isActive(id), "active " + id);
+            if (!active) continue;
+            assertEquals(board.getOwnerIndex(id), view.getOwnerIndex(id), "owner " + id);
+            assertEquals(board.getDice(id), view.getDice(id), "dice " + id);
+        }
+    }
+
+    /**
+     * loads a stored board onto a fresh map of the same settings
+     *
+     * @param board original board
+     * @param view stored board
+     */
+    private static void assertLoads (Map board, BoardView view) {
+        Map copy = new Map(GeneratorTest.players(4), board.getTopology(), board.VICTIMS,
+                board.MAXDICE, new SplittableRandom(3), board.getGenerator());
+        copy.load(view);
+        assertArrayEquals(board.snapshot(), copy.snapshot());
+        for (int id = 0; id < board.NUMTERRITORIES; id++)
+            assertEquals(board.getGraph().isInGraph(id), copy.getGraph().isInGraph(id));
+    }
+
+    /**
+     * boards whose dice fit a nibble (8) and ones that need a byte (40)
+     * survive encode() and load()
+     */
+    @Test
+    public void boardsRoundTrip () {
+        SplittableRandom rng = new SplittableRandom(20);
+        for (int maxDice: new int[] {8, 40})
+            for (Map board: boards(maxDice, rng)) {
+                BoardView view = new BoardView(BoardView.encode(board));
+                assertStored(board, view);
+                assertLoads(board, view);
+            }
+    }
+
+    /**
+     * the same boards survive a trip through a corpus file
+     *
+     * @param dir scratch directory
+     * @throws IOException if the corpus cannot be written or read
+     */
+    @Test
+    public void corpusRoundTrip (@TempDir Path dir) throws IOException {
+        SplittableRandom rng = new SplittableRandom(21);
+        List<Map> boards = new ArrayList<>();
+        for (int maxDice: new int[] {8, 40}) boards.addAll(boards(maxDice, rng));
+        Path file = dir.resolve("boards.bin");
+        try (BoardCorpus.Writer writer = new BoardCorpus.Writer(file)) {
+            for (int index = 0; index < boards.size(); index++)
+                assertEquals(index, writer.add(boards.get(index)));
+        }
+        try (BoardCorpus corpus = new BoardCorpus(file)) {
+            assertEquals(boards.size(), corpus.size());
+            for (int index = 0; index < boards.size(); index++) {
+                assertStored(boards.get(index), corpus.get(index));
+                assertLoads(boards.get(index), corpus.get(index));
+            }
+        }
+    }
+
+    /**
+     * a record claiming more dice than the map allows is rejected
+     */
+    @Test
+    public void loadRejectsTooManyDice () {
+        for (int maxDice: new int[] {8, 40}) {
+            Map board = boards(maxDice, new SplittableRandom(maxDice)).get(0);
+            ByteBuffer bytes = BoardView.encode(board);
+            int id = 0;
+            while (!board.getGraph().isInGraph(id)) id++;
+            int cells = board.NUMTERRITORIES;
+            int dice = BoardView.HEADER + (cells + 7) / 8 + cells;
+            if (maxDice > BoardView.NIBBLE_DICE)
+                bytes.put(dice + id, (byte) (maxDice + 1));
+            else {
+                int at = dice + (id >> 1), shift = (id & 1) << 2;
+                bytes.put(at, (byte) (bytes.get(at) & ~(0xF << shift)
+                        | (maxDice + 1) << shift));
+            }
+            BoardView view = new BoardView(bytes);
+            assertEquals(maxDice + 1, view.getDice(id));
+            String message = assertThrows(IllegalArgumentException.class,
+                    () -> assertLoads(board, view)).getMessage();
+            assertEquals("territory " + id + " has " + (maxDice + 1)
+                    + " dice, more than this map's " + maxDice, message);
+        }
+    }
+
+}
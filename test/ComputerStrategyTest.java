@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The rewritten ComputerStrategy must make the same decisions as the
+ * original (kept as pbenoit).
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class ComputerStrategyTest {
+
+    /**
+     * Plays as ComputerStrategy and asks pbenoit the same question every
+     * time, failing on the first disagreement.
+     */
+    static class Compared implements Strategy {
+
+        /**
+         * strategies being compared
+         */
+        private final ComputerStrategy after = new ComputerStrategy();
+        private final pbenoit before = new pbenoit();
+
+        /**
+         * number of decisions compared
+         */
+        int decisions;
+
+        @Override
+        public void setPlayer (Player whom) {
+            after.setPlayer(whom);
+            before.setPlayer(whom);
+        }
+
+        @Override
+        public boolean willAttack (Map board) {
+            boolean attack = after.willAttack(board);
+            assertEquals(before.willAttack(board), attack);
+            if (attack) {
+                assertEquals(before.getAttacker().getIdNum(), after.getAttacker().getIdNum());
+                assertEquals(before.getDefender().getIdNum(), after.getDefender().getIdNum());
+            }
+            decisions++;
+            return attack;
+        }
+
+        @Override
+        public Territory getAttacker () {return after.getAttacker();}
+
+        @Override
+        public Territory getDefender () {return after.getDefender();}
+    }
+
+    /**
+     * seeded games on small and large boards of every shape
+     */
+    @Test
+    public void decisionsMatchTheOriginal () {
+        int[] sizes = {5, 10, 30};
+        for (GridTopology.Shape shape: GridTopology.Shape.values())
+            for (int size: sizes) {
+                ArrayList<Player> players = new ArrayList<>();
+                ArrayList<Compared> seats = new ArrayList<>();
+                for (int step = 0; step < 4; step++) {
+                    Compared seat = new Compared();
+                    seats.add(seat);
+                    players.add(Simulator.seat("Player" + step, seat));
+                }
+                Map board = new MapBuilder(players).topology(GridTopology.of(shape, size, size))
+                        .victims(size * size / 4).seed(size).build();
+                Simulator sim = new Simulator(board, new SplittableRandom(size));
+                for (int game = 0; game < 3; game++) sim.playGame();
+                for (Compared seat: seats)
+                    assertTrue(seat.decisions > 0, shape + " " + size);
+            }
+    }
+
+}
@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Board generation: every generator must leave a connected board with
+ * exactly the requested number of unused cells, on every shape.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class GeneratorTest {
+
+    /**
+     * seats players that never attack
+     *
+     * @param count number of players
+     * @return players
+     */
+    static ArrayList<Player> players (int count) {
+        ArrayList<Player> players = new ArrayList<>();
+        for (int step = 0; step < count; step++)
+            players.add(Simulator.seat("Player" + step, new MilquetoastStrategy()));
+        return players;
+    }
+
+    /**
+     * Builds an irregular board: a grid's borders plus some random extra
+     * ones.
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param rng source of the extra borders
+     * @return region topology
+     */
+    static RegionTopology regions (int rows, int columns, SplittableRandom rng) {
+        List<int[]> borders = new ArrayList<>();
+        int total = rows * columns;
+        for (int cell = 0; cell < total; cell++) {
+            if (cell % columns + 1 < columns) borders.add(new int[] {cell, cell + 1});
+            if (cell + columns < total) borders.add(new int[] {cell, cell + columns});
+        }
+        for (int step = 0; step < total / 3; step++) {
+            int a = rng.nextInt(total), b = rng.nextInt(total);
+            if (a != b) borders.add(new int[] {a, b});
+        }
+        return new RegionTopology(rows, columns, borders.toArray(new int[0][]));
+    }
+
+    /**
+     * lists a topology of every kind at a few sizes
+     *
+     * @param rng source of the irregular boards
+     * @return topologies
+     */
+    static List<Topology> shapes (SplittableRandom rng) {
+        List<Topology> shapes = new ArrayList<>();
+        int[][] sizes = {{1, 2}, {2, 2}, {3, 5}, {8, 8}, {13, 7}};
+        for (int[] size: sizes) {
+            for (GridTopology.Shape shape: GridTopology.Shape.values())
+                shapes.add(GridTopology.of(shape, size[0], size[1]));
+            shapes.add(regions(size[0], size[1], rng));
+        }
+        return shapes;
+    }
+
+    /**
+     * carves random boards and checks what is left
+     */
+    @Test
+    public void everyGeneratorLeavesAConnectedBoard () {
+        SplittableRandom rng = new SplittableRandom(17);
+        for (Topology shape: shapes(rng))
+            for (Map.Generator mode: Map.Generator.values())
+                for (int trial = 0; trial < 20; trial++) {
+                    int victims = rng.nextInt(shape.size() - 1);
+                    Map board = new Map(players(2), shape, victims, 8,
+                            new SplittableRandom(rng.nextLong()), mode);
+                    Graph graph = board.getGraph();
+                    String where = mode + " " + shape + " victims " + victims;
+                    assertTrue(graph.connected(), where);
+                    assertEquals(shape.size() - victims, graph.getActiveVertices(), where);
+                    for (int id = 0; id < shape.size(); id++)
+                        assertEquals(graph.isInGraph(id), board.getOwnerIndex(id) >= 0, where);
+                }
+    }
+
+    /**
+     * Boards may be carved down to two territories but no further, with
+     * either generator (one territory cannot be carved out: a hang with the
+     * legacy generator, an empty board with the fast one).
+     */
+    @Test
+    public void victimsMustLeaveTwoTerritories () {
+        int[][] sizes = {{1, 2}, {2, 2}, {3, 5}};
+        for (Map.Generator mode: Map.Generator.values())
+            for (int[] size: sizes) {
+                Topology shape = GridTopology.square(size[0], size[1]);
+                int most = shape.size() - 2;
+                String where = mode + " " + shape;
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    for (long seed = 0; seed < 20; seed++) {
+                        Map board = new Map(players(2), shape, most, 8,
+                                new SplittableRandom(seed), mode);
+                        assertTrue(board.getGraph().connected(), where);
+                        assertEquals(2, board.getGraph().getActiveVertices(), where);
+                    }
+                    assertThrows(IllegalArgumentException.class, () -> new Map(players(2),
+                            shape, most + 1, 8, new SplittableRandom(0), mode), where);
+                    assertThrows(IllegalArgumentException.class, () -> new Map(players(2),
+                            shape, -1, 8, new SplittableRandom(0), mode), where);
+                }, where);
+            }
+    }
+
+}
@@ -0,0 +1,42 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Probes must keep every recorded call while dropping the recorders of
+ * threads that have ended.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class MetricsTest {
+
+    /**
+     * many short lived threads leave their counts but not their recorders
+     *
+     * @throws InterruptedException if interrupted while joining
+     */
+    @Test
+    public void endedThreadsAreRetired () throws InterruptedException {
+        Metrics.Probe probe = Metrics.probe("MetricsTest.endedThreadsAreRetired");
+        for (int round = 0; round < 50; round++) {
+            Thread t = new Thread(() -> {
+                probe.record(1000);
+                probe.record(2000);
+            });
+            t.start();
+            t.join();
+        }
+        probe.record(3000);
+        assertEquals(101, probe.snapshot().getCount());
+        assertEquals(1, probe.countRecorders());
+
+        probe.reset();
+        Thread t = new Thread(() -> probe.record(4000));
+        t.start();
+        t.join();
+        assertEquals(1, probe.snapshot().getCount());
+        assertEquals(1, probe.countRecorders());
+    }
+
+}
@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * MonteCarloStrategy decisions that are interrupted (as GuardedStrategy
+ * does at its deadline) must stop and leave the strategy usable.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class MonteCarloStrategyTest {
+
+    /**
+     * an interrupted search stops early, passes and keeps the interrupt
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void interruptedDecisionPasses () throws InterruptedException {
+        ArrayList<Player> players = GeneratorTest.players(2);
+        Map board = new Map(players, 5, 8, 10, 8, new SplittableRandom(4));
+        MonteCarloStrategy strategy = new MonteCarloStrategy(4, 60000, 1);
+        strategy.setPlayer(players.get(0));
+        AtomicBoolean answer = new AtomicBoolean(true), flag = new AtomicBoolean();
+        Thread decider = new Thread(() -> {
+            answer.set(strategy.willAttack(board));
+            flag.set(Thread.currentThread().isInterrupted());
+        });
+        long start = System.nanoTime();
+        decider.start();
+        Thread.sleep(200);
+        decider.interrupt();
+        decider.join(10000);
+        assertFalse(decider.isAlive(), "decision did not stop");
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertTrue(strategy.getPlayouts() > 0, "no search ran");
+        assertFalse(answer.get());
+        assertTrue(flag.get(), "interrupt was swallowed");
+
+        //the next decision searches from scratch as usual
+        strategy.setPlayoutLimit(50);
+        long before = strategy.getPlayouts();
+        strategy.willAttack(board);
+        assertTrue(strategy.getPlayouts() - before >= 50);
+    }
+
+}
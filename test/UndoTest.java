@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Map.mark() and undo(), and snapshot() and restore(), must put back
+ * exactly the board they started from.
+ *
+ * @author Phillip Benoit
+ *
+ */
+public class UndoTest {
+
+    /**
+     * Makes random changes to active territories.
+     *
+     * @param board board to change
+     * @param changes number of changes
+     * @param rng source of the changes
+     */
+    static void scramble (Map board, int changes, SplittableRandom rng) {
+        Graph graph = board.getGraph();
+        for (int step = 0; step < changes; step++) {
+            int id;
+            do id = rng.nextInt(board.NUMTERRITORIES);
+            while (!graph.isInGraph(id));
+            if (rng.nextBoolean())
+                board.setOwner(id, board.getPlayer(rng.nextInt(board.getPlayerCount())));
+            else board.setDice(id, 1 + rng.nextInt(board.MAXDICE));
+        }
+    }
+
+    /**
+     * nested marks each undo back to their own position
+     */
+    @Test
+    public void undoRestoresEachMark () {
+        SplittableRandom rng = new SplittableRandom(11);
+        Map board = new Map(GeneratorTest.players(3), 8, 9, 12, 8, new SplittableRandom(5));
+        for (int trial = 0; trial < 200; trial++) {
+            byte[] outer = board.snapshot();
+            int first = board.mark();
+            scramble(board, rng.nextInt(20), rng);
+            byte[] inner = board.snapshot();
+            int second = board.mark();
+            scramble(board, rng.nextInt(20), rng);
+            board.undo(second);
+            assertArrayEquals(inner, board.snapshot());
+            board.undo(first);
+            assertArrayEquals(outer, board.snapshot());
+        }
+        board.clearJournal();
+    }
+
+    /**
+     * territories with ID#s past 16 bits undo like any other
+     */
+    @Test
+    public void undoCoversLargeIds () {
+        SplittableRandom rng = new SplittableRandom(3);
+        ArrayList<Player> players = GeneratorTest.players(2);
+        Map board = new Map(players, GridTopology.square(300, 300), 100, 8,
+                new SplittableRandom(9), Map.Generator.FAST);
+        byte[] before = board.snapshot();
+        int position = board.mark();
+        for (int id = board.NUMTERRITORIES - 1; id > board.NUMTERRITORIES - 5000; id--)
+            if (board.getGraph().isInGraph(id)) {
+                board.setOwner(id, players.get(rng.nextInt(2)));
+                board.setDice(id, 1 + rng.nextInt(board.MAXDICE));
+            }
+        board.undo(position);
+        assertArrayEquals(before, board.snapshot());
+    }
+
+    /**
+     * restore() puts back a snapshot
+     */
+    @Test
+    public void restorePutsBackASnapshot () {
+        SplittableRandom rng = new SplittableRandom(7);
+        Map board = new Map(GeneratorTest.players(4), 6, 6, 5, 8, new SplittableRandom(2));
+        for (int trial = 0; trial < 50; trial++) {
+            byte[] copy = board.snapshot();
+            scramble(board, 1 + rng.nextInt(30), rng);
+            board.restore(copy);
+            assertArrayEquals(copy, board.snapshot());
+        }
+    }
+
+}